@@ -1,3 +1,5 @@
 module MPPROG3MCO2 {
     requires java.desktop;
-}
\ No newline at end of file
+    requires jdk.management;
+    requires jdk.jfr;
+}
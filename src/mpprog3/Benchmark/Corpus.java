@@ -0,0 +1,69 @@
+package mpprog3.Benchmark;
+
+import java.util.SplittableRandom;
+import mpprog3.Controller.board;
+import mpprog3.Engine.AlphaBeta;
+import mpprog3.Engine.Move;
+import mpprog3.Engine.MoveGenerator;
+import mpprog3.Engine.Position;
+import mpprog3.Engine.TranspositionTable;
+import mpprog3.Model.Piece;
+
+/**
+ * A reproducible set of mid-game boards for the benchmarks.
+ * <p>
+ * Each board is reached from {@link board#setPieces()} by a few seeded random moves
+ * followed by shallow {@link AlphaBeta} moves, all played through
+ * {@link board#movePiece} and {@link board#trapped}. Boards are kept only if the game is
+ * still running, so they have the piece counts, captures and trapped pieces of real
+ * games in progress.
+ */
+public final class Corpus {
+    /** Random moves at the start of each game. */
+    private static final int RANDOM_PLIES = 6;
+    /** Depth of the searched moves. */
+    private static final int SEARCH_DEPTH = 2;
+    /** Fewest plies played before a board is taken. */
+    private static final int MIN_PLIES = 14;
+    /** Number of different game lengths after {@link #MIN_PLIES}. */
+    private static final int PLY_SPREAD = 30;
+    /** Budget of the searches, which stop at the depth limit instead. */
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private Corpus () {
+    }
+
+    /**
+     * Builds the corpus.
+     *
+     * @param size The number of boards
+     * @param seed The seed of the random moves
+     * @return The boards
+     */
+    public static board[] midGame (int size, long seed) {
+        board[] boards = new board[size];
+        AlphaBeta search = new AlphaBeta(new TranspositionTable(1));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+        for (int i = 0, game = 0; i < size; game++) {
+            SplittableRandom random = new SplittableRandom(seed + game);
+            board b = new board();
+            Position pos = b.getPosition();
+            int plies = MIN_PLIES + game % PLY_SPREAD, ply;
+
+            for (ply = 0; ply < plies && pos.winner() == 0; ply++) {
+                int n = b.generateMoves(pos.getSideToMove(), moves), move;
+                if (n == 0)
+                    break;
+                move = ply < RANDOM_PLIES ? moves[random.nextInt(n)] : search.search(pos, DAY_MILLIS, SEARCH_DEPTH);
+
+                Piece piece = b.getPiece(Move.piece(move));
+                b.movePiece(piece, Position.row(Move.to(move)), Position.col(Move.to(move)));
+                b.trapped(piece);
+            }
+            if (ply == plies && pos.winner() == 0)
+                boards[i++] = b;
+        }
+        return boards;
+    }
+}
@@ -0,0 +1,165 @@
+package mpprog3.Benchmark;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * A small microbenchmark harness: warmup, timed iterations and allocation counting.
+ * <p>
+ * An operation is called in batches until an iteration's time is used up. The result
+ * of every call is folded into a sink, so the JIT cannot remove the work. Each benchmark
+ * reports:
+ * <ul>
+ *   <li>Operations per second, as the mean and standard deviation of the measured
+ *       iterations</li>
+ *   <li>Bytes allocated per operation and the allocation rate, from the current thread's
+ *       allocation counter ({@code com.sun.management.ThreadMXBean}), like the
+ *       {@code gc} profiler of JMH</li>
+ * </ul>
+ *
+ * @see RulesBenchmark
+ */
+public final class Harness {
+    /** Calls between two clock checks. */
+    private static final int BATCH = 1024;
+
+    /** Receives the folded results so the work cannot be optimized away. */
+    private static volatile int sink;
+
+    /** Thread allocation counter, or null if the JVM does not provide one. */
+    private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+    /** Warmup iterations per benchmark. */
+    private final int warmup;
+    /** Measured iterations per benchmark. */
+    private final int iterations;
+    /** Length of one iteration in milliseconds. */
+    private final long millis;
+
+    /**
+     * A benchmarked operation.
+     */
+    @FunctionalInterface
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @param i The call number, used to cycle through a corpus
+         * @return Any value depending on the work done
+         */
+        int run (int i);
+    }
+
+    /**
+     * The measurements of one benchmark.
+     */
+    public static final class Result {
+        /** The benchmark name. */
+        public final String name;
+        /** Mean operations per second. */
+        public final double opsPerSecond;
+        /** Standard deviation of the operations per second. */
+        public final double error;
+        /** Bytes allocated per operation, or -1 if unknown. */
+        public final double bytesPerOp;
+        /** Bytes allocated per second, or -1 if unknown. */
+        public final double bytesPerSecond;
+
+        Result (String name, double opsPerSecond, double error, double bytesPerOp, double bytesPerSecond) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    /**
+     * Constructs a harness.
+     *
+     * @param warmup Warmup iterations per benchmark
+     * @param iterations Measured iterations per benchmark
+     * @param millis Length of one iteration in milliseconds
+     */
+    public Harness (int warmup, int iterations, long millis) {
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.millis = millis;
+    }
+
+    /**
+     * Benchmarks an operation.
+     *
+     * @param name The benchmark name
+     * @param operation The operation
+     * @return The measurements
+     */
+    public Result run (String name, Operation operation) {
+        double[] rates = new double[iterations];
+        long calls = 0, nanos = 0, bytes = 0;
+
+        for (int k = 0; k < warmup; k++)
+            iteration(operation, null);
+        for (int k = 0; k < iterations; k++) {
+            long[] counts = new long[3];
+            iteration(operation, counts);
+            rates[k] = counts[0] * 1e9 / counts[1];
+            calls += counts[0];
+            nanos += counts[1];
+            bytes += counts[2];
+        }
+
+        double mean = 0, variance = 0;
+        for (double rate : rates)
+            mean += rate / iterations;
+        for (double rate : rates)
+            variance += (rate - mean) * (rate - mean) / Math.max(1, iterations - 1);
+
+        boolean counted = THREADS != null;
+        return new Result(name, mean, Math.sqrt(variance), counted ? (double) bytes / calls : -1,
+                counted ? bytes * 1e9 / nanos : -1);
+    }
+
+    /**
+     * Runs one iteration.
+     *
+     * @param operation The operation
+     * @param counts Receives the calls, nanoseconds and bytes allocated; null for warmup
+     */
+    private void iteration (Operation operation, long[] counts) {
+        long threadId = Thread.currentThread().getId();
+        long allocated = THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime(), end = start + millis * 1_000_000L, now;
+        long i = 0;
+        int folded = 0;
+
+        do {
+            for (int b = 0; b < BATCH; b++)
+                folded += operation.run((int) (i++ & Integer.MAX_VALUE));
+            now = System.nanoTime();
+        } while (now < end);
+
+        sink += folded;
+        if (counts != null) {
+            counts[0] = i;
+            counts[1] = now - start;
+            counts[2] = THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(threadId) - allocated;
+        }
+    }
+
+    /**
+     * Finds the thread allocation counter.
+     *
+     * @return The bean, or null if allocation counting is not available
+     */
+    private static com.sun.management.ThreadMXBean threads () {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        if (!bean.isThreadAllocatedMemorySupported())
+            return null;
+        bean.setThreadAllocatedMemoryEnabled(true);
+        return bean;
+    }
+}
@@ -0,0 +1,408 @@
+package mpprog3.Benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import mpprog3.Controller.board;
+import mpprog3.Engine.Move;
+import mpprog3.Engine.MoveGenerator;
+import mpprog3.Engine.Position;
+import mpprog3.Model.Piece;
+import mpprog3.Model.elephant;
+import mpprog3.Model.lion;
+import mpprog3.Model.rat;
+import mpprog3.Model.tiger;
+
+/**
+ * Benchmarks of the rules engine hot paths over a {@link Corpus} of mid-game boards.
+ * <p>
+ * Covered methods:
+ * <ul>
+ *   <li>{@link board#isValidMove}, with every step and lake jump target of every piece</li>
+ *   <li>{@link board#movePiece}, each legal move made and taken back with
+ *       {@link board#undoMove()}</li>
+ *   <li>{@link Piece#capture} and the {@link rat} and {@link elephant} overrides, on
+ *       copies of every pair of opposing pieces, so the corpus boards are not changed</li>
+ *   <li>{@link board#getGrid}, {@link board#searchforPiece} and {@link board#findPiece}</li>
+ * </ul>
+ * Results can be saved with {@code --save} and compared later with {@code --baseline}.
+ * The rules paths record JFR events instead of printing, so with no recording running
+ * they are measured as they run in the game.
+ * <p>
+ * Each benchmark runs in its own JVM, started with the same JVM options and class path
+ * and {@code --filter} set to its name, like a JMH fork. In one JVM the operations of
+ * every benchmark would go through the same {@link Harness.Operation#run(int)} call
+ * site, which the JIT compiles for the first ones and then sees turn megamorphic, so
+ * later benchmarks would be measured through a virtual call that earlier ones were not.
+ * {@code --no-fork} runs them all in the current JVM anyway, with a warning.
+ *
+ * @see Harness
+ */
+public final class RulesBenchmark {
+    /** The benchmark names, in the order they run. */
+    static final String[] NAMES = {"board.isValidMove", "board.movePiece", "Piece.capture", "rat.capture",
+        "elephant.capture", "board.getGrid", "board.searchforPiece", "board.findPiece"};
+    /** Option of a forked JVM: run in this JVM and print the results as CSV. */
+    private static final String CHILD = "--child";
+
+    /** The boards. */
+    private final board[] boards;
+
+    /** isValidMove probes. */
+    private final List<Probe> validProbes = new ArrayList<>();
+    /** movePiece probes. */
+    private final List<Probe> moveProbes = new ArrayList<>();
+    /** Capture pairs by benchmark name: attacker then defender. */
+    private final Map<String, List<Piece[]>> capturePairs = new HashMap<>();
+
+    /**
+     * Prepares the probes of a corpus.
+     *
+     * @param boards The boards
+     */
+    public RulesBenchmark (board[] boards) {
+        this.boards = boards;
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[][] offsets = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}, {-3, 0}, {3, 0}, {0, -4}, {0, 4}};
+
+        capturePairs.put("Piece.capture", new ArrayList<>());
+        capturePairs.put("rat.capture", new ArrayList<>());
+        capturePairs.put("elephant.capture", new ArrayList<>());
+
+        for (board b : boards) {
+            for (int i = 0; i < Position.PIECES; i++) {
+                Piece piece = b.getPiece(i);
+                if (!piece.getAlive())
+                    continue;
+                for (int[] offset : offsets) {
+                    int r = piece.getRow() + offset[0], c = piece.getColumn() + offset[1];
+                    if (b.isWithinBounds(r, c))
+                        validProbes.add(new Probe(b, piece, r, c));
+                }
+                for (int j = 0; j < Position.PIECES; j++) {
+                    Piece defender = b.getPiece(j);
+                    if (defender.getAlive() && defender.getPlayerNumber() != piece.getPlayerNumber())
+                        addCapturePair(piece, defender);
+                }
+            }
+
+            for (int player = 1; player <= 2; player++) {
+                int n = b.generateMoves(player, moves);
+                for (int k = 0; k < n; k++)
+                    moveProbes.add(new Probe(b, b.getPiece(Move.piece(moves[k])),
+                            Position.row(Move.to(moves[k])), Position.col(Move.to(moves[k]))));
+            }
+        }
+    }
+
+    /**
+     * A piece and a target square on a corpus board.
+     */
+    private static final class Probe {
+        final board board;
+        final Piece piece;
+        final int row, col;
+
+        Probe (board board, Piece piece, int row, int col) {
+            this.board = board;
+            this.piece = piece;
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    /**
+     * Adds copies of an attacker and a defender to the capture pairs.
+     *
+     * @param attacker The attacking piece on a board
+     * @param defender The defending piece on a board
+     */
+    private void addCapturePair (Piece attacker, Piece defender) {
+        Piece[] pair = {copy(attacker), copy(defender)};
+
+        if (attacker instanceof elephant) {
+            capturePairs.get("elephant.capture").add(pair);
+        }
+        else if (attacker instanceof rat || defender instanceof rat) {
+            capturePairs.get("rat.capture").add(pair);
+        }
+        else {
+            capturePairs.get("Piece.capture").add(pair);
+        }
+    }
+
+    /**
+     * Creates a detached piece of the same class and state.
+     *
+     * @param piece The piece
+     * @return The copy
+     */
+    private static Piece copy (Piece piece) {
+        int player = piece.getPlayerNumber();
+        Piece copy;
+
+        if (piece instanceof rat)
+            copy = new rat(player);
+        else if (piece instanceof elephant)
+            copy = new elephant(player);
+        else if (piece instanceof lion)
+            copy = new lion(player);
+        else if (piece instanceof tiger)
+            copy = new tiger(player);
+        else
+            copy = new Piece(piece.getPieceName(), piece.getStrength(), player);
+
+        copy.setPosition(piece.getRow(), piece.getColumn());
+        copy.setCurrentTerrain(piece.getCurrentTerrain());
+        if (piece.getWeak())
+            copy.setWeak();
+        return copy;
+    }
+
+    /**
+     * Runs the benchmarks whose name contains a filter.
+     *
+     * @param harness The harness
+     * @param filter The filter; empty for all
+     * @return The results
+     */
+    public List<Harness.Result> run (Harness harness, String filter) {
+        List<Harness.Result> results = new ArrayList<>();
+        Probe[] valid = validProbes.toArray(new Probe[0]);
+        Probe[] move = moveProbes.toArray(new Probe[0]);
+        int n = boards.length;
+
+        run(results, harness, filter, "board.isValidMove", i -> {
+            Probe p = valid[i % valid.length];
+            return p.board.isValidMove(p.piece, p.row, p.col) ? 1 : 0;
+        });
+        run(results, harness, filter, "board.movePiece", i -> {
+            Probe p = move[i % move.length];
+            boolean moved = p.board.movePiece(p.piece, p.row, p.col);
+            p.board.undoMove();
+            return moved ? 1 : 0;
+        });
+        for (String name : new String[] {"Piece.capture", "rat.capture", "elephant.capture"}) {
+            Piece[][] pairs = capturePairs.get(name).toArray(new Piece[0][]);
+            run(results, harness, filter, name, i -> {
+                Piece[] pair = pairs[i % pairs.length];
+                return pair[0].capture(pair[1]) ? 1 : 0;
+            });
+        }
+        run(results, harness, filter, "board.getGrid", i -> {
+            int sq = i % Position.SQUARES;
+            return boards[i / Position.SQUARES % n].getGrid(Position.row(sq), Position.col(sq)) instanceof Piece ? 1 : 0;
+        });
+        run(results, harness, filter, "board.searchforPiece", i -> {
+            Piece piece = boards[0].getPiece(i % Position.PIECES);
+            return boards[i / Position.PIECES % n].searchforPiece(piece.getPieceName(), piece.getPlayerNumber()) != null ? 1 : 0;
+        });
+        run(results, harness, filter, "board.findPiece", i -> {
+            Piece piece = boards[0].getPiece(i % Position.PIECES);
+            return boards[i / Position.PIECES % n].findPiece(piece.getPieceName()) != null ? 1 : 0;
+        });
+        return results;
+    }
+
+    /**
+     * Runs one benchmark if its name matches the filter.
+     *
+     * @param results Receives the result
+     * @param harness The harness
+     * @param filter The filter
+     * @param name The benchmark name
+     * @param operation The benchmarked operation
+     */
+    private static void run (List<Harness.Result> results, Harness harness, String filter, String name,
+            Harness.Operation operation) {
+        if (name.contains(filter))
+            results.add(harness.run(name, operation));
+    }
+
+    /**
+     * Reads saved results.
+     *
+     * @param file A file written by {@link #save(Path, List)}
+     * @return Operations per second by benchmark name
+     * @throws IOException if the file cannot be read
+     */
+    private static Map<String, Double> load (Path file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        String line;
+
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length >= 2 && !fields[0].equals("benchmark"))
+                    baseline.put(fields[0], Double.parseDouble(fields[1]));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes results as CSV.
+     *
+     * @param file The output file
+     * @param results The results
+     * @throws IOException if the file cannot be written
+     */
+    private static void save (Path file, List<Harness.Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("benchmark,ops/s,error,B/op,B/s");
+            for (Harness.Result r : results)
+                out.println(csv(r));
+        }
+    }
+
+    /**
+     * Formats a result as a CSV line.
+     *
+     * @param r The result
+     * @return The name, ops/s, error, B/op and B/s
+     */
+    private static String csv (Harness.Result r) {
+        return String.format(Locale.ROOT, "%s,%.1f,%.1f,%.2f,%.1f", r.name, r.opsPerSecond, r.error, r.bytesPerOp, r.bytesPerSecond);
+    }
+
+    /**
+     * Runs each benchmark matching a filter in a new JVM and collects the results it
+     * prints.
+     *
+     * @param args The command line, passed on to every JVM
+     * @param filter The filter; empty for all
+     * @return The results
+     * @throws IOException if a JVM cannot be started or fails
+     */
+    private static List<Harness.Result> fork (String[] args, String filter) throws IOException {
+        List<Harness.Result> results = new ArrayList<>();
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String modules = System.getProperty("jdk.module.path");
+
+        for (String name : NAMES) {
+            if (!name.contains(filter))
+                continue;
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+            if (modules != null)
+                command.addAll(Arrays.asList("-p", modules, "-m", RulesBenchmark.class.getModule().getName() + "/"
+                        + RulesBenchmark.class.getName()));
+            else
+                command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), RulesBenchmark.class.getName()));
+            command.addAll(Arrays.asList(args));
+            command.addAll(Arrays.asList("--filter", name, CHILD)); // the last --filter wins
+
+            Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            String line;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                while ((line = in.readLine()) != null) {
+                    String[] fields = line.split(",");
+                    if (fields.length == 5 && fields[0].equals(name))
+                        results.add(new Harness.Result(name, Double.parseDouble(fields[1]), Double.parseDouble(fields[2]),
+                                Double.parseDouble(fields[3]), Double.parseDouble(fields[4])));
+                }
+            }
+            try {
+                if (process.waitFor() != 0)
+                    throw new IOException("the JVM running " + name + " exited with " + process.exitValue());
+            }
+            catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while running " + name, e);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds the corpus, runs the benchmarks and prints ops/s and allocation.
+     *
+     * @param args {@code [--warmup N] [--iterations N] [--millis M] [--positions N]
+     *             [--filter NAME] [--save FILE] [--baseline FILE] [--no-fork]}
+     * @throws IOException if a results file cannot be read or written
+     */
+    public static void main (String[] args) throws IOException {
+        int warmup = 3, iterations = 5, positions = 64;
+        long millis = 1000;
+        String filter = "";
+        Path saveFile = null, baselineFile = null;
+        boolean fork = true, child = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "--positions":
+                    positions = Integer.parseInt(args[++i]);
+                    break;
+                case "--filter":
+                    filter = args[++i];
+                    break;
+                case "--save":
+                    saveFile = Paths.get(args[++i]);
+                    break;
+                case "--baseline":
+                    baselineFile = Paths.get(args[++i]);
+                    break;
+                case "--no-fork":
+                    fork = false;
+                    break;
+                case CHILD:
+                    child = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        if (child) {
+            for (Harness.Result r : new RulesBenchmark(Corpus.midGame(positions, 1))
+                    .run(new Harness(warmup, iterations, millis), filter))
+                System.out.println(csv(r));
+            return;
+        }
+
+        Map<String, Double> baseline = baselineFile == null ? new HashMap<>() : load(baselineFile);
+        List<Harness.Result> results;
+        if (fork) {
+            results = fork(args, filter);
+        }
+        else {
+            RulesBenchmark benchmark = new RulesBenchmark(Corpus.midGame(positions, 1));
+            results = benchmark.run(new Harness(warmup, iterations, millis), filter);
+            if (results.size() > 1)
+                System.err.println("Warning: " + results.size() + " benchmarks ran in one JVM and share the call site "
+                        + "of Harness.Operation.run; the later ones may be measured through a megamorphic call");
+        }
+
+        System.out.printf("%-22s %16s %12s %10s %12s%s%n", "Benchmark", "ops/s", "error", "B/op", "MB/s",
+                baseline.isEmpty() ? "" : "   vs baseline");
+        for (Harness.Result r : results) {
+            Double base = baseline.get(r.name);
+            System.out.printf("%-22s %16.0f %12.0f %10.2f %12.1f%s%n", r.name, r.opsPerSecond, r.error, r.bytesPerOp,
+                    r.bytesPerSecond / (1 << 20), base == null ? "" : String.format("   %+.1f%%", (r.opsPerSecond / base - 1) * 100));
+        }
+        if (saveFile != null)
+            save(saveFile, results);
+    }
+}
@@ -0,0 +1,225 @@
+package mpprog3.Controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import mpprog3.Engine.Position;
+import mpprog3.Model.Piece;
+
+/**
+ * Constant-time registry of the sixteen pieces of a {@link board}.
+ * <p>
+ * Every piece has a small integer id derived from its type and owner, the same number
+ * as its {@link Position} piece index: {@code (player - 1) * 8 + type}, where the type
+ * is the strength minus one. The registry keeps, in parallel primitive arrays indexed
+ * by id:
+ * <ul>
+ *   <li>The square the piece stands on, or {@link #NOWHERE} once it is captured</li>
+ *   <li>Whether it is still on the board</li>
+ *   <li>Whether it is weakened by an enemy trap</li>
+ * </ul>
+ * so finding a piece, its square or its state is an array load. Names such as
+ * {@code "rat-blue"} map to ids through one precomputed table, for the callers that
+ * still look pieces up by name.
+ *
+ * @see board
+ * @see Position#index(int, int)
+ */
+public final class PieceRegistry {
+	/**
+	 * Square of a piece that is not on the board.
+	 */
+	public static final int NOWHERE = -1;
+
+	/**
+	 * Animal names by type.
+	 */
+	private static final String[] ANIMALS = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
+
+	/**
+	 * Piece names by id.
+	 */
+	private static final String[] NAMES = new String[Position.PIECES];
+
+	/**
+	 * Ids by piece name.
+	 */
+	private static final Map<String, Integer> IDS = new HashMap<>();
+
+	static {
+		for (int id = 0; id < Position.PIECES; id++) {
+			NAMES[id] = ANIMALS[Position.typeOf(id)] + (Position.playerOf(id) == 1 ? "-blue" : "-green");
+			IDS.put(NAMES[id], id);
+		}
+	}
+
+	/**
+	 * The piece objects by id.
+	 */
+	private final Piece[] pieces = new Piece[Position.PIECES];
+
+	/**
+	 * The square of each piece, or {@link #NOWHERE}.
+	 */
+	private final byte[] squares = new byte[Position.PIECES];
+
+	/**
+	 * Whether each piece is on the board.
+	 */
+	private final boolean[] alive = new boolean[Position.PIECES];
+
+	/**
+	 * Whether each piece is weakened by an enemy trap.
+	 */
+	private final boolean[] weak = new boolean[Position.PIECES];
+
+	/**
+	 * Constructs an empty registry; every piece is off the board.
+	 */
+	public PieceRegistry () {
+		java.util.Arrays.fill(squares, (byte) NOWHERE);
+	}
+
+	/**
+	 * Returns the id of a piece type and owner.
+	 *
+	 * @param player The player (1 or 2)
+	 * @param type The type (0 for the rat to 7 for the elephant)
+	 * @return The id (0-15)
+	 */
+	public static int id (int player, int type) {
+		return Position.index(player, type);
+	}
+
+	/**
+	 * Returns the id of a piece object, from its owner and strength.
+	 *
+	 * @param piece The piece
+	 * @return The id (0-15)
+	 */
+	public static int idOf (Piece piece) {
+		return Position.index(piece.getPlayerNumber(), piece.getStrength() - 1);
+	}
+
+	/**
+	 * Returns the id of a piece name.
+	 *
+	 * @param name A name such as {@code "rat-blue"}
+	 * @return The id (0-15), or -1 if no piece has this name
+	 */
+	public static int idOf (String name) {
+		Integer id = IDS.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Returns the name of a piece.
+	 *
+	 * @param id The id (0-15)
+	 * @return The name, such as {@code "rat-blue"}
+	 */
+	public static String nameOf (int id) {
+		return NAMES[id];
+	}
+
+	/**
+	 * Adds a piece object under the id of its type and owner, off the board.
+	 *
+	 * @param piece The piece
+	 */
+	public void register (Piece piece) {
+		int id = idOf(piece);
+
+		pieces[id] = piece;
+		squares[id] = (byte) NOWHERE;
+		alive[id] = false;
+		weak[id] = false;
+	}
+
+	/**
+	 * Returns a piece object.
+	 *
+	 * @param id The id (0-15)
+	 * @return The piece, or null if none was registered
+	 */
+	public Piece get (int id) {
+		return pieces[id];
+	}
+
+	/**
+	 * Returns the square of a piece.
+	 *
+	 * @param id The id (0-15)
+	 * @return The square (0-62), or {@link #NOWHERE} if it is not on the board
+	 */
+	public int square (int id) {
+		return squares[id];
+	}
+
+	/**
+	 * Tells whether a piece is on the board.
+	 *
+	 * @param id The id (0-15)
+	 * @return true until the piece is captured
+	 */
+	public boolean isAlive (int id) {
+		return alive[id];
+	}
+
+	/**
+	 * Tells whether a piece is weakened by an enemy trap.
+	 *
+	 * @param id The id (0-15)
+	 * @return true if the piece is weak
+	 */
+	public boolean isWeak (int id) {
+		return weak[id];
+	}
+
+	/**
+	 * Records a piece standing on a square and copies the state into its object.
+	 *
+	 * @param id The id (0-15)
+	 * @param sq The square (0-62)
+	 * @param isWeak Whether the piece is weak there
+	 */
+	public void place (int id, int sq, boolean isWeak) {
+		Piece piece = pieces[id];
+
+		squares[id] = (byte) sq;
+		alive[id] = true;
+		weak[id] = isWeak;
+
+		piece.setAlive();
+		piece.setPosition(Position.row(sq), Position.col(sq));
+		piece.setCurrentTerrain(Position.terrain(sq));
+		if (isWeak)
+			piece.setWeak();
+		else
+			piece.setNotWeak();
+	}
+
+	/**
+	 * Records a piece as captured and copies the state into its object.
+	 *
+	 * @param id The id (0-15)
+	 */
+	public void remove (int id) {
+		squares[id] = (byte) NOWHERE;
+		alive[id] = false;
+		pieces[id].setDead();
+	}
+
+	/**
+	 * Changes the weakness of a piece and copies it into its object.
+	 *
+	 * @param id The id (0-15)
+	 * @param isWeak Whether the piece is weak
+	 */
+	public void setWeak (int id, boolean isWeak) {
+		weak[id] = isWeak;
+		if (isWeak)
+			pieces[id].setWeak();
+		else
+			pieces[id].setNotWeak();
+	}
+}
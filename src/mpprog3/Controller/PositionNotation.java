@@ -0,0 +1,238 @@
+package mpprog3.Controller;
+
+import mpprog3.Engine.Move;
+import mpprog3.Engine.Position;
+import mpprog3.Engine.RandomGames;
+
+/**
+ * A one-line text notation for positions, in the style of chess FEN.
+ * <p>
+ * A position is written as three fields separated by single spaces:
+ * <ol>
+ *   <li>Piece placement: the rows from row 0 (the top of the Swing board) to row 6,
+ *       separated by {@code /}. Each row lists its columns from a to i, with a piece
+ *       written as its {@link Move#letter(int)} (upper case for player 1, lower case
+ *       for player 2: R, C, D, W, P, T, L, E) and a run of empty squares as a digit
+ *       1-9</li>
+ *   <li>The side to move: {@code 1} or {@code 2}</li>
+ *   <li>The weakened pieces: their squares in ascending square order, named as by
+ *       {@link Move#squareName(int)}, or {@code -} if none</li>
+ * </ol>
+ * The starting layout is {@code T1E3r1l/1C5d1/2W3p2/9/2P3w2/1D5c1/L1R3e1t 1 -}.
+ * <p>
+ * The parser accepts exactly the strings the serializer writes, so the notation of a
+ * position is unique and {@code format(parse(s))} equals {@code s} byte for byte.
+ * That makes the strings usable as cache and dataset keys. Parsing reads the text
+ * character by character into an existing position or board, without allocating; a
+ * board is first parsed into a scratch position kept per thread, so that it is left
+ * unchanged by a bad notation.
+ *
+ * @see board#setPosition(Position)
+ */
+public final class PositionNotation {
+    /** The notation of the starting layout. */
+    public static final String START = "T1E3r1l/1C5d1/2W3p2/9/2P3w2/1D5c1/L1R3e1t 1 -";
+
+    /** Piece letters of player 1 by type. */
+    private static final String LETTERS = "RCDWPTLE";
+    /** Position a board's notation is validated in before the board is changed. */
+    private static final ThreadLocal<Position> SCRATCH = ThreadLocal.withInitial(Position::new);
+
+    private PositionNotation () {
+    }
+
+    /**
+     * Writes the notation of a position.
+     *
+     * @param pos The position
+     * @return The notation
+     */
+    public static String format (Position pos) {
+        StringBuilder text = new StringBuilder(64);
+        format(pos, text);
+        return text.toString();
+    }
+
+    /**
+     * Appends the notation of a position to a builder.
+     *
+     * @param pos The position
+     * @param text The builder
+     */
+    public static void format (Position pos, StringBuilder text) {
+        for (int row = 0; row < Position.ROWS; row++) {
+            int empty = 0;
+            if (row > 0)
+                text.append('/');
+            for (int col = 0; col < Position.COLS; col++) {
+                int piece = pos.pieceAt(row, col);
+                if (piece == Position.EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    text.append((char) ('0' + empty));
+                empty = 0;
+                text.append(Move.letter(piece));
+            }
+            if (empty > 0)
+                text.append((char) ('0' + empty));
+        }
+
+        text.append(' ').append(pos.getSideToMove()).append(' ');
+        long weak = pos.weak();
+        if (weak == 0)
+            text.append('-');
+        for (; weak != 0; weak &= weak - 1) {
+            int sq = Long.numberOfTrailingZeros(weak);
+            text.append((char) ('a' + Position.col(sq))).append((char) ('1' + Position.row(sq)));
+        }
+    }
+
+    /**
+     * Writes the notation of a board.
+     *
+     * @param b The board
+     * @return The notation
+     */
+    public static String format (board b) {
+        return format(b.getPosition());
+    }
+
+    /**
+     * Builds a board from a notation.
+     *
+     * @param text The notation
+     * @return A new board holding the position, with no undo history
+     * @throws IllegalArgumentException if the text is not a valid notation
+     */
+    public static board parse (CharSequence text) {
+        board b = new board();
+        parse(text, b);
+        return b;
+    }
+
+    /**
+     * Sets a board to the position of a notation, updating all its piece objects.
+     *
+     * @param text The notation
+     * @param b The board; unchanged if the text is not valid
+     * @throws IllegalArgumentException if the text is not a valid notation
+     */
+    public static void parse (CharSequence text, board b) {
+        Position pos = SCRATCH.get();
+        parse(text, pos); // validate before touching the board
+        b.setPosition(pos);
+    }
+
+    /**
+     * Sets a position to the position of a notation.
+     *
+     * @param text The notation
+     * @param pos The position; cleared first, and left in an unspecified state if the
+     *            text is not valid
+     * @throws IllegalArgumentException if the text is not a valid notation
+     */
+    public static void parse (CharSequence text, Position pos) {
+        int i = 0, n = text.length(), row = 0, col = 0;
+        boolean lastWasDigit = false;
+
+        pos.clear();
+        for (; i < n && text.charAt(i) != ' '; i++) {
+            char ch = text.charAt(i);
+
+            if (ch == '/') {
+                if (col != Position.COLS || row == Position.ROWS - 1)
+                    throw error(text, i, "row " + (row + 1) + " does not have " + Position.COLS + " columns");
+                row++;
+                col = 0;
+                lastWasDigit = false;
+            }
+            else if (ch >= '1' && ch <= '9') {
+                if (lastWasDigit || col + (ch - '0') > Position.COLS)
+                    throw error(text, i, "bad run of empty squares");
+                col += ch - '0';
+                lastWasDigit = true;
+            }
+            else {
+                int type = LETTERS.indexOf(Character.toUpperCase(ch));
+                if (type < 0 || col == Position.COLS)
+                    throw error(text, i, "unexpected '" + ch + "'");
+                int piece = Position.index(Character.isUpperCase(ch) ? 1 : 2, type);
+                if (pos.squareOf(piece) < Position.SQUARES)
+                    throw error(text, i, "piece '" + ch + "' appears twice");
+                pos.put(piece, Position.square(row, col++));
+                lastWasDigit = false;
+            }
+        }
+        if (row != Position.ROWS - 1 || col != Position.COLS)
+            throw error(text, i, "the placement does not have " + Position.ROWS + " full rows");
+
+        if (i + 2 >= n || text.charAt(i + 1) < '1' || text.charAt(i + 1) > '2' || text.charAt(i + 2) != ' ')
+            throw error(text, i + 1, "expected the side to move, 1 or 2");
+        pos.setSideToMove(text.charAt(i + 1) - '0');
+        i += 3;
+
+        if (i + 1 == n && text.charAt(i) == '-')
+            return;
+        int last = -1;
+        for (; i < n; i += 2) {
+            char file = i + 1 < n ? text.charAt(i) : 0, rank = i + 1 < n ? text.charAt(i + 1) : 0;
+            if (file < 'a' || file >= 'a' + Position.COLS || rank < '1' || rank >= '1' + Position.ROWS)
+                throw error(text, i, "expected a weak square or -");
+            int sq = Position.square(rank - '1', file - 'a');
+            if (sq <= last || pos.isEmpty(sq))
+                throw error(text, i, "weak squares must be occupied and in ascending order");
+            pos.setWeak(sq, true);
+            last = sq;
+        }
+        if (last < 0)
+            throw error(text, i, "expected a weak square or -");
+    }
+
+    /**
+     * Builds the exception for a bad notation.
+     *
+     * @param text The notation
+     * @param index The position of the problem in the text
+     * @param problem What is wrong
+     * @return The exception
+     */
+    private static IllegalArgumentException error (CharSequence text, int index, String problem) {
+        return new IllegalArgumentException("bad position notation at " + index + ": " + problem + " in \"" + text + "\"");
+    }
+
+    /**
+     * Checks the round trip on random games and prints the notation of each position
+     * given on the command line as it is read back.
+     *
+     * @param args Notations to check; none to check random games
+     */
+    public static void main (String[] args) {
+        if (args.length > 0) {
+            for (String arg : args)
+                System.out.println(format(parse(arg)));
+            return;
+        }
+
+        RandomGames games = new RandomGames(1);
+        Position copy = new Position();
+        StringBuilder text = new StringBuilder(64);
+        long positions = 0, start = System.nanoTime();
+
+        if (!format(new board()).equals(START))
+            throw new AssertionError("starting layout: " + format(new board()));
+        for (int game = 0; game < 1000; game++) {
+            Position pos = games.newGame();
+            do {
+                text.setLength(0);
+                format(pos, text);
+                parse(text, copy);
+                if (copy.hash() != pos.hash() || !format(copy).contentEquals(text))
+                    throw new AssertionError("round trip failed: " + text);
+                positions++;
+            } while (games.step());
+        }
+        System.out.printf("%d positions round-tripped in %.2f s%n", positions, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -1,10 +1,21 @@
 package mpprog3.Controller;
 
-import java.util.*;
+import jdk.jfr.EventType;
+import mpprog3.Engine.Move;
+import mpprog3.Events.CaptureEvent;
+import mpprog3.Events.MoveEvent;
+import mpprog3.Events.MoveValidationEvent;
+import mpprog3.Events.TrapEvent;
+import mpprog3.Engine.MoveGenerator;
+import mpprog3.Engine.Position;
 import mpprog3.Model.*;
 /**
  * Represents the game board for Jungle King, managing the 7x9 grid and game state.
  * <p>
+ * The board is a facade over a bitboard {@link Position}: all occupancy, terrain and
+ * weakness state lives in the position, while this class keeps the {@link Piece}
+ * objects used by the views in sync with it.
+ * <p>
  * Responsibilities include:
  * <ul>
  *   <li>Initializing and maintaining the game grid with pieces and terrain</li>
@@ -22,157 +33,168 @@ import mpprog3.Model.*;
  *   <li>Traps surrounding each base</li>
  * </ul>
  * 
- * @see Grid
+ * @see Position
  * @see Piece
  */
 public class board {
+    /** JFR types of the rules events, checked before an event is allocated. */
+    private static final EventType MOVE_EVENT = EventType.getEventType(MoveEvent.class);
+    private static final EventType CAPTURE_EVENT = EventType.getEventType(CaptureEvent.class);
+    private static final EventType VALIDATION_EVENT = EventType.getEventType(MoveValidationEvent.class);
+    private static final EventType TRAP_EVENT = EventType.getEventType(TrapEvent.class);
+
     /**
-     * The 7x9 game grid containing all cells and their contents.
+     * The bitboard position holding piece placement, weakness and terrain.
      */
-    private Grid[][] board;
+    private Position position;
     
     /**
-     * List of all game pieces currently in play.
+     * The piece objects and their square, alive and weak state, by piece id.
      */
-    private ArrayList<Piece> pieces;
+    private PieceRegistry registry;
 
     /**
      * Constructs a new game board with initial setup.
      * <p>
      * Initialization sequence:
      * <ol>
-     *   <li>Creates empty 7×9 grid</li>
-     *   <li>Places lake terrain</li>
-     *   <li>Sets up bases and traps</li>
+     *   <li>Creates an empty position (lakes, traps and dens are constant terrain masks)</li>
      *   <li>Creates all game pieces</li>
      *   <li>Places pieces in starting positions</li>
      * </ol>
      */
 	public board () {
-		board = new Grid[7][9]; // initializes the 7x9 grid
-		pieces = new ArrayList<>();
+		position = new Position();
+		registry = new PieceRegistry();
 		
-		setOnlyBoard();
-		setLake();
-		setBases();
 		instantiatePieces();
 		setPieces();
 	}
 	
 
 	/**
-	 * Initializes the game board with empty tiles.
-	 * Each tile is set to '.' to indicate an open space.
+	 * Instantiates the game pieces for both players.
+	 * Each piece is assigned a name, strength, and player number.
+	 * The pieces are registered under the id of their type and owner.
 	 */
-	public void setOnlyBoard () { // initializes board to be '.' only
-		int i, j;
+	public void instantiatePieces () { // create pieces for player 1 and 2
+		int i, type;
 		
-		for (i = 0; i < board.length; i++) {
-			for (j = 0; j < board[i].length; j++) {
-				board[i][j] = new Grid ('.');
-			}
+		for (i = 1; i <= 2; i++) { // twice for both players
+			registry.register(new rat(i));
+			registry.register(new tiger(i));
+			registry.register(new lion(i));
+			registry.register(new elephant(i));
+			
+			for (type = Position.CAT; type <= Position.LEOPARD; type++) // strength is type + 1
+				registry.register(new Piece(PieceRegistry.nameOf(PieceRegistry.id(i, type)), type + 1, i));
 		}
 	}
 	
-
 	/**
-	 * Sets the lake tiles on the game board.
-	 * The lake is represented by the '~' symbol.
-	 * The lake occupies two 2x3 regions in the middle of the board.
+	 * Initializes the board by placing pieces in their designated starting positions.
+	 * The pieces are taken from the registry by type, from the rat to the elephant.
+	 * Any previous placement is discarded.
 	 */
-	public void setLake () { // sets the lake to be '~'
-		int i, j;
+	public void setPieces () {
+		int type;
 		
-		for (i = 1; i < 3; i++) {
-			for (j = 3; j < 6; j++) {
-				board[i][j].setTerrain('~');
-			}
-		}
+		position.clear();
 		
-		for (i = 4; i < 6; i++) {
-			for (j = 3; j < 6; j++) {
-				board[i][j].setTerrain('~');
-			}
+		int[][] positionsP1 = {{6, 2}, {1, 1}, {5, 1}, {2, 2}, {4, 2}, {0, 0}, {6, 0}, {0, 2}};
+		int[][] positionsP2 = {{0, 6}, {5, 7}, {1, 7}, {4, 6}, {2, 6}, {6, 8}, {0, 8}, {6, 6}};
+		
+		for (type = 0; type < Position.TYPES; type++) {
+			place(registry.get(PieceRegistry.id(1, type)), positionsP1[type][0], positionsP1[type][1]);
+			place(registry.get(PieceRegistry.id(2, type)), positionsP2[type][0], positionsP2[type][1]);
 		}
 	}
 	
 	/**
-	 * Sets up the bases on the game board.
-	 * The bases are represented by the '@' symbol.
-	 * Commented-out sections indicate trap locations.
+	 * Puts a piece on an empty square of the position and updates the piece's own fields.
+	 *
+	 * @param piece The piece to place
+	 * @param r The row position (0-6)
+	 * @param c The column position (0-8)
 	 */
-	public void setBases () {
-		// left base
-		board[2][0].setTerrain('#');
-		board[3][0].setTerrain('@');
-		board[3][1].setTerrain('#');
-		board[4][0].setTerrain('#');
-		
-		// right base;
-		board[2][8].setTerrain('#');
-		board[3][8].setTerrain('@');
-		board[3][7].setTerrain('#');
-		board[4][8].setTerrain('#');
+	private void place (Piece piece, int r, int c) {
+		int sq = Position.square(r, c), id = PieceRegistry.idOf(piece);
+		
+		position.put(id, sq);
+		position.setWeak(sq, piece.getWeak());
+		registry.place(id, sq, piece.getWeak());
 	}
 	
-
 	/**
-	 * Instantiates the game pieces for both players.
-	 * Each piece is assigned a name, strength, and player number.
-	 * The pieces are stored in a list for easy access.
+	 * Returns the bitboard position behind this board.
+	 * <p>
+	 * Headless callers can use it for primitive occupancy and terrain tests
+	 * instead of going through {@link #getGrid(int, int)}.
+	 *
+	 * @return The live position (not a copy)
 	 */
-	public void instantiatePieces () { // create pieces for player 1 and 2
-		int i, j;
-		
-		String[] pieceNames = {"cat-", "dog-", "wolf-", "leopard-"};
-		int[] strengths = {2, 3, 4, 5};
-		
-		for (i = 1; i <= 2; i++) { // twice for both players
-			pieces.add(new rat(i));
-			pieces.add(new tiger(i));
-			pieces.add(new lion(i));
-			pieces.add(new elephant(i));
+	public Position getPosition () {
+		return position;
+	}
+	
+	/**
+	 * Replaces the board's state with a copy of a position and updates every piece
+	 * object, including the captured ones. The undo history starts empty.
+	 *
+	 * @param other The position to copy
+	 * @see PositionNotation#parse(CharSequence)
+	 */
+	public void setPosition (Position other) {
+		position.copyFrom(other);
+		syncAll();
+	}
+	
+	/**
+	 * Copies the state of all sixteen pieces in the position into the registry and
+	 * their {@link Piece} objects, after the position was changed as a whole.
+	 */
+	void syncAll () {
+		for (int index = 0; index < Position.PIECES; index++) {
+			int sq = position.squareOf(index);
 			
-			for (j = 0; j < strengths.length; j++) {
-				if (i == 1)
-					pieces.add(new Piece(pieceNames[j] + "blue", strengths[j], i));
-				else
-					pieces.add(new Piece(pieceNames[j] + "green", strengths[j], i));
-			}
+			if (sq >= Position.SQUARES)
+				registry.remove(index);
+			else
+				registry.place(index, sq, position.isWeak(sq));
 		}
 	}
 	
 	/**
-	 * Initializes the board by placing pieces in their designated starting positions.
-	 * The pieces are assigned based on their names retrieved from the piece list.
+	 * Returns the registry of the piece objects and their state.
+	 *
+	 * @return The live registry (not a copy)
 	 */
-	public void setPieces () {
-		int i;
-		
-		String[] pieceNames = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
-		
-		int[][] positionsP1 = {{6, 2}, {1, 1}, {5, 1}, {2, 2}, {4, 2}, {0, 0}, {6, 0}, {0, 2}};
-		int[][] positionsP2 = {{0, 6}, {5, 7}, {1, 7}, {4, 6}, {2, 6}, {6, 8}, {0, 8}, {6, 6}};
-		
-		for (i = 0; i < positionsP1.length; i++) {
-			board[positionsP1[i][0]][positionsP1[i][1]].setPiece(findPiece(pieceNames[i] + "-blue"), positionsP1[i][0], positionsP1[i][1]);
-			board[positionsP2[i][0]][positionsP2[i][1]].setPiece(findPiece(pieceNames[i] + "-green"), positionsP2[i][0], positionsP2[i][1]);
-		}
+	public PieceRegistry getRegistry () {
+		return registry;
+	}
+	
+	/**
+	 * Returns the piece object for a {@link Position} piece index.
+	 *
+	 * @param index The piece index (0-15), which is also its {@link PieceRegistry} id
+	 * @return The piece object
+	 */
+	public Piece getPiece (int index) {
+		return registry.get(index);
 	}
 	
 
 	/**
-	 * Finds a piece by its name from the list of pieces.
+	 * Finds a piece by its name, whether or not it is still on the board.
 	 *
 	 * @param name The name of the piece to find.
 	 * @return The Piece object if found, otherwise null.
+	 * @see PieceRegistry#idOf(String)
 	 */
-	public Piece findPiece (String name) { // finds piece by its String name in array list
-		for (Piece p: pieces) {
-			if (p.getPieceName().equals(name))
-				return p;
-		}
-		return null;
+	public Piece findPiece (String name) { // one table lookup from the name to the piece id
+		int id = PieceRegistry.idOf(name);
+		
+		return id < 0 ? null : registry.get(id);
 	}
 	
 
@@ -183,9 +205,9 @@ public class board {
 	public void displayBoard () {
 		int i, j;
 		
-		for (i = 0; i < board.length; i++) {
-			for (j = 0; j < board[i].length; j++) {
-				System.out.print(board[i][j].getObject()+"\t");
+		for (i = 0; i < Position.ROWS; i++) {
+			for (j = 0; j < Position.COLS; j++) {
+				System.out.print(getGrid(i, j)+"\t");
 			}
 			System.out.println();
 			System.out.println();
@@ -193,83 +215,104 @@ public class board {
 	}
 	/**
  * Moves a piece to new coordinates while handling all game rules
+ * <p>
+ * The move is made on the {@link Position} with {@link Position#makeMove(int)}, so it
+ * can be taken back with {@link #undoMove()}; the affected {@link Piece} objects are
+ * then refreshed from the position. A {@link MoveEvent} is recorded for every move and a
+ * {@link CaptureEvent} for every capture when JFR has them enabled; otherwise no event
+ * object is created.
  * @param piece The piece to move
  * @param newR Target row (0-6)
  * @param newC Target column (0-8)
  * @return true if move was successful, false otherwise
  */
 public boolean movePiece(Piece piece, int newR, int newC) {
-    int oldR = piece.getRow(), oldC = piece.getColumn();
+    MoveEvent event = MOVE_EVENT.isEnabled() ? new MoveEvent() : null;
+    if (event != null)
+        event.begin();
+    int move = findMove(piece, newR, newC);
     
-    if (!piece.getAlive()) 
-        return false;
-        
-    if (!isValidMove(piece, newR, newC))
+    if (move == Move.NONE)
         return false;
-    System.out.println("valid move" + isValidMove(piece, newR, newC));
-    Grid targetTile = board[newR][newC];
-    String m = determineMove(oldR, oldC, newR, newC);
     
-    // Update piece's current terrain
-    piece.setCurrentTerrain(targetTile.getTerrain());
+    boolean capturedWeak = position.isWeak(Move.to(move));
+    position.makeMove(move);
+    sync(Move.piece(move));
     
-    // Handle lake crossing (Lions/Tigers)
-    if (targetTile.getTerrain() == '~' && piece.canCross()) {
-        int crossR = newR, crossC = newC;
-        
-        if ("W".equals(m)) {
-            crossR = newR - 2;
-        } else if ("S".equals(m)) {
-            crossR = newR + 2;
-        } else if ("A".equals(m)) {
-            crossC = newC - 3;
-        } else if ("D".equals(m)) {
-            crossC = newC + 3;
-        }
-        
-        if (!isWithinBounds(crossR, crossC)) 
-            return false;
-            
-        targetTile = board[crossR][crossC];
-        piece.setCurrentTerrain(targetTile.getTerrain());
-        
-        if (targetTile.getObject() instanceof Piece) {
-            Piece targetPiece = (Piece) targetTile.getObject();
-            if (!piece.canCapture(targetPiece) || !targetPiece.canBeCapturedBy(piece))
-                return false;
-                
-            piece.setPosition(crossR, crossC);
-            targetTile.setPiece(piece, crossR, crossC);
-            board[oldR][oldC].setNull();
-            return true;
-        }
-        
-        piece.setPosition(crossR, crossC);
-        board[crossR][crossC].setPiece(piece, crossR, crossC);
-        board[oldR][oldC].setNull();
-        return true;
-    }
+    if (Move.isCapture(move))
+        sync(Move.captured(move));
     
-    // Handle normal captures
-    if (targetTile.getObject() instanceof Piece) {
-        Piece targetPiece = (Piece) targetTile.getObject();
-        if (!piece.capture(targetPiece)){
-			System.out.println("no captures"); 
-            return false;
-		}
-        System.out.println("captures");    
-        piece.setPosition(newR, newC);
-        targetTile.setPiece(piece, newR, newC);
-        board[oldR][oldC].setNull();
-        return true;
+    if (event != null && event.shouldCommit()) {
+        event.move = Move.toString(move);
+        event.player = Position.playerOf(Move.piece(move));
+        event.piece = PieceRegistry.nameOf(Move.piece(move));
+        event.captured = Move.isCapture(move) ? PieceRegistry.nameOf(Move.captured(move)) : null;
+        event.jump = Move.isJump(move);
+        event.commit();
+    }
+    if (Move.isCapture(move) && CAPTURE_EVENT.isEnabled()) {
+        CaptureEvent capture = new CaptureEvent();
+        capture.attacker = PieceRegistry.nameOf(Move.piece(move));
+        capture.defender = PieceRegistry.nameOf(Move.captured(move));
+        capture.square = Move.squareName(Move.to(move));
+        capture.defenderWeak = capturedWeak;
+        capture.commit();
     }
-    
-    // Handle normal movement
-    piece.setPosition(newR, newC);
-    board[newR][newC].setPiece(piece, newR, newC);
-    board[oldR][oldC].setNull();
     return true;
 }
+
+	/**
+	 * Takes back the last move made with {@link #movePiece(Piece, int, int)},
+	 * restoring any captured piece.
+	 *
+	 * @return true if a move was undone, false if there was nothing to undo
+	 */
+	public boolean undoMove () {
+		if (position.historySize() == 0)
+			return false;
+		
+		int move = position.unmakeMove();
+		sync(Move.piece(move));
+		
+		if (Move.isCapture(move))
+			sync(Move.captured(move));
+		return true;
+	}
+	
+	/**
+	 * Copies the state of a piece in the position (square, terrain, weakness and
+	 * whether it is still on the board) into its {@link Piece} object.
+	 *
+	 * @param index The piece index (0-15)
+	 */
+	private void sync (int index) {
+		int sq = position.squareOf(index);
+		boolean wasWeak = registry.isWeak(index);
+		
+		if (sq >= Position.SQUARES) { // captured
+			registry.remove(index);
+			return;
+		}
+		
+		registry.place(index, sq, position.isWeak(sq));
+		if (registry.isWeak(index) != wasWeak)
+			recordTrap(registry.get(index));
+	}
+	
+	/**
+	 * Records a {@link TrapEvent} for a piece whose weakness just changed.
+	 *
+	 * @param piece The piece, on the board
+	 */
+	private void recordTrap (Piece piece) {
+		if (TRAP_EVENT.isEnabled()) {
+			TrapEvent event = new TrapEvent();
+			event.piece = piece.getPieceName();
+			event.square = Move.squareName(Position.square(piece.getRow(), piece.getColumn()));
+			event.weak = piece.getWeak();
+			event.commit();
+		}
+	}
 	
 
 	/**
@@ -342,76 +385,73 @@ public boolean movePiece(Piece piece, int newR, int newC) {
  * @param newR The target row coordinate (0-6)
  * @param newC The target column coordinate (0-8)
  * @return true if the move is valid according to game rules, false otherwise
+ * @see MoveValidationEvent
  * @see #isWithinBounds(int, int)
- * @see #determineMove(int, int, int, int)
- * @see #isRestrictedTile(Piece, int, int)
- * @see #isLakeRowEmpty(int)
- * @see #isLakeColEmpty(int, int)
+ * @see #findMove(Piece, int, int)
+ * @see MoveGenerator
  */
 	public boolean isValidMove (Piece piece, int newR, int newC) { // checks if piece move is valid
-		if (piece == null)
-			return false;
-		int currR = piece.getRow(), currC = piece.getColumn();
-		String move;
-		// switch (m) {
-			// case "W":
-				// newR--;
-				// break;
-			// case "S": 
-				// newR++; 
-				// break;
-			// case "A": 
-				// newC-- ; 
-				// break;
-			// case "D": 
-				// newC++; 
-				// break;
-			// default: 
-				// return false; // invalid move input
-		// }
-		
-		if (!isWithinBounds(newR, newC)) // if out of bounds
-			return false;
-			
-		if (determineMove(currR, currC, newR, newC).equals("null")) // if move is not single-tile, or crossing lake
-			return false;
-		move = determineMove(currR, currC, newR, newC);
-		Grid targetTile = board[newR][newC];
+		MoveValidationEvent event = VALIDATION_EVENT.isEnabled() ? new MoveValidationEvent() : null;
+		if (event != null)
+			event.begin();
+		boolean valid = findMove(piece, newR, newC) != Move.NONE;
 		
+		if (event != null && event.shouldCommit()) {
+			event.piece = piece == null ? null : piece.getPieceName();
+			event.from = piece == null || !piece.getAlive() ? null : Move.squareName(Position.square(piece.getRow(), piece.getColumn()));
+			event.to = isWithinBounds(newR, newC) ? Move.squareName(Position.square(newR, newC)) : null;
+			event.valid = valid;
+			event.commit();
+		}
+		return valid;
+	}
+	
+	/**
+	 * Finds the engine move that takes a piece to the specified coordinates.
+	 * <p>
+	 * The target may be an adjacent square or, for tigers and lions, either the first
+	 * lake square of a crossing or its landing square on the far shore.
+	 *
+	 * @param piece The piece attempting to move
+	 * @param newR The target row coordinate (0-6)
+	 * @param newC The target column coordinate (0-8)
+	 * @return The packed {@link Move}, or {@link Move#NONE} if the move is illegal
+	 * @see MoveGenerator#stepMove(Position, int, int)
+	 */
+	public int findMove (Piece piece, int newR, int newC) {
+		if (piece == null || !isWithinBounds(newR, newC)) // if out of bounds
+			return Move.NONE;
 		
-		if (isRestrictedTile(piece, newR, newC)) // if targetTile is a friendly trap or home base
-			return false;
+		int id = PieceRegistry.idOf(piece);
+		if (registry.get(id) != piece || !registry.isAlive(id))
+			return Move.NONE;
 		
-		if (targetTile.getObject().equals('~') && !piece.canSwim() && !piece.canCross()){ // if piece wants to go to lake but can't swim
-		System.out.println("piece cant cross lake");
-			return false;
-		}	
-
-		if (targetTile.getObject().equals('~') && piece.canSwim() && !piece.canCross()){
-			System.out.println("piece swims lake");
-			return true;
-		} // if piece wants to go to lake but can't swim
-			
+		int from = registry.square(id);
+		int to = Position.square(newR, newC);
+		int dir = MoveGenerator.direction(from, to);
 		
-		// if piece can cross but lake row/col is occupied with ratR
-		if (targetTile.getObject().equals('~') && piece.canCross() && !isLakeRowEmpty(newR) && (move.equalsIgnoreCase("a") || move.equalsIgnoreCase("d"))){
-			System.out.println("rat in lake row");
-			return false;
-		}
+		if (dir < 0)
+			return Move.NONE;
 		
-		if (targetTile.getObject().equals('~') && piece.canCross() && !isLakeColEmpty(newR, currC) && (move.equalsIgnoreCase("s") || move.equalsIgnoreCase("w"))){
-			System.out.println("rat in lake col");
-			return false;
-		}
+		int move = MoveGenerator.stepMove(position, from, dir);
+		if (move == Move.NONE)
+			return Move.NONE;
 		
-		else if (targetTile.getObject() instanceof Piece) {
-			Piece targetPiece = targetTile.getPiece();
-			if (piece.getNumber() == targetPiece.getNumber()) // ensures it can only capture/move to opposing pieces
-				return false;
-			if (!piece.capture(targetPiece))
-				return false;
-		}
-		return true;
+		if (Move.to(move) == to || (Move.isJump(move) && Position.isLake(to) && Math.abs(newR - Position.row(from)) + Math.abs(newC - Position.col(from)) == 1))
+			return move;
+		return Move.NONE;
+	}
+	
+	/**
+	 * Fills an array with every legal move of a player without allocating.
+	 *
+	 * @param player The player (1 or 2)
+	 * @param moves The output array, at least {@link MoveGenerator#MAX_MOVES} long
+	 * @return The number of packed {@link Move}s written
+	 * @see MoveGenerator#generate(Position, int, int[])
+	 */
+	public int generateMoves (int player, int[] moves) {
+		return MoveGenerator.generate(position, player, moves);
 	}
 	/**
 	 * Checks if the specified row and column are within the valid board boundaries.
@@ -449,14 +489,9 @@ public boolean movePiece(Piece piece, int newR, int newC) {
  	* @return true if the specified lake row is empty, false if a piece is present.
  	*/
 	public boolean isLakeRowEmpty (int r) { // r = newR; checks if lakeRow is clear of rats
-		int i;
-		
-		for (i = 3; i <= 5; i++) {
-			if (board[r][i].getPiece() != null) // if there's a piece (rat) in the lake tile)
-					return false;
-		}
+		long lakeRow = Position.bit(r, 3) | Position.bit(r, 4) | Position.bit(r, 5);
 		
-		return true;
+		return (position.occupied() & lakeRow) == 0; // if there's a piece (rat) in the lake tiles
 	}
 	
 
@@ -468,24 +503,15 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 	* @return true if the specified lake column is empty, false if a piece is present.
 	*/
 	public boolean isLakeColEmpty (int r, int c) { // c = currC, r = newR
-		int i;
-		
-		if (r == 1 || r == 2) {
-			for (i = 1; i <= 2; i++) {
-				if (board[i][c].getPiece() != null) // if there's a piece (rat) in the lake tile)
-						return false;
-			}
-		}
+		long lakeCol = 0;
 		
-		else if (r == 4 || r == 5) {
-			for (i = 4; i <= 5; i++) {
-				if (board[i][c].getPiece() != null) // if there's a piece (rat) in the lake tile)
-						return false;
-			}
-		}
+		if (r == 1 || r == 2)
+			lakeCol = Position.bit(1, c) | Position.bit(2, c);
 		
+		else if (r == 4 || r == 5)
+			lakeCol = Position.bit(4, c) | Position.bit(5, c);
 		
-		return true;
+		return (position.occupied() & lakeCol) == 0; // if there's a piece (rat) in the lake tiles
 	}
 	
 
@@ -494,24 +520,14 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 	 *
 	 * @param pieceName The name of the piece to search for.
 	 * @param playerNo  The player number who owns the piece.
-	 * @return The Piece object if found; otherwise, returns null.
+	 * @return The Piece object if it is on the board; otherwise, returns null.
 	 */
 	public Piece searchforPiece(String pieceName, int playerNo){
-		int row,col;
+		int id = PieceRegistry.idOf(pieceName);
 
-		for (row = 0; row < 7; row++){
-			for (col = 0; col < 9; col++){
-				if(board[row][col].getObject() instanceof Piece){
-					if(board[row][col].getPiece().getNumber() == playerNo && board[row][col].getPiece().getPieceName().equals(pieceName)){
-						if (board[row][col].getPiece() != null){
-							return board[row][col].getPiece();
-						
-						}
-					}
-				}
-			}
-		}
-		return null;
+		if (id < 0 || Position.playerOf(id) != playerNo || !registry.isAlive(id))
+			return null;
+		return registry.get(id);
 	}
 	
 	/**
@@ -529,9 +545,11 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 	 * @throws ArrayIndexOutOfBoundsException if row or column is out of valid range
 	 */
 	public Object getGrid (int row, int col) {
-		if (board[row][col].getPiece() != null)
-			return board[row][col].getPiece();
-		return board[row][col].getTerrain();
+		int index = position.pieceAt(row, col);
+		
+		if (index != Position.EMPTY)
+			return registry.get(index);
+		return Position.terrain(Position.square(row, col));
 	}
 	
 	/**
@@ -549,10 +567,16 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 	 *   <li>Standing on normal terrain</li>
 	 * </ul>
 	 * 
+	 * <p>A {@link TrapEvent} is recorded when the status changes here; moves made with
+	 * {@link #movePiece(Piece, int, int)} already update the status, and record the event, as
+	 * the piece lands.
+	 * 
 	 * @param piece The piece to check and potentially weaken
 	 * @see #isTrap(int, int)
 	 */
 	public void trapped (Piece piece) {
+		boolean wasWeak = piece.getWeak();
+		
 		if (isTrap(piece.getRow(), piece.getColumn()) == piece.getPlayerNumber()){
 		piece.setWeak();
 		}
@@ -560,6 +584,15 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 		else{
 			piece.setNotWeak();
 		}
+		
+		if (piece.getAlive()) {
+			int id = PieceRegistry.idOf(piece);
+			position.setWeak(registry.square(id), piece.getWeak());
+			registry.setWeak(id, piece.getWeak());
+		}
+		
+		if (piece.getWeak() != wasWeak)
+			recordTrap(piece);
 	 }
 	
 	 /**
@@ -577,9 +610,11 @@ public boolean movePiece(Piece piece, int newR, int newC) {
 	 * @throws ArrayIndexOutOfBoundsException if row or column is out of valid range
 	 */
 	 public int isTrap(int row, int col){
-		if (board[row][col].getTerrain() == '#' && col < 3)
+		long b = Position.bit(row, col);
+		
+		if ((Position.TRAPS_1 & b) != 0)
 			return 2;
-		if (board[row][col].getTerrain() == '#' && col > 5)
+		if ((Position.TRAPS_2 & b) != 0)
 			return 1;	
 		return -1;
 	 }
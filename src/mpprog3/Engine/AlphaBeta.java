@@ -0,0 +1,470 @@
+package mpprog3.Engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Negamax alpha-beta search with iterative deepening under a wall-clock budget.
+ * <p>
+ * The search deepens one ply at a time, starting each iteration with the best move of
+ * the previous one, until the budget runs out; the move of the last completed
+ * iteration is played. Moves are made and unmade on a private {@link Position}, so no
+ * position is copied inside the tree. Results are cached in a
+ * {@link TranspositionTable}, which cuts off transpositions and supplies the first move
+ * to try.
+ * <p>
+ * Move ordering inside the tree:
+ * <ol>
+ *   <li>The transposition table move</li>
+ *   <li>Moves into the enemy den</li>
+ *   <li>Captures, most valuable victim first</li>
+ *   <li>Quiet moves</li>
+ * </ol>
+ * <p>
+ * Several instances can share one table as Lazy SMP helpers ({@link LazySmp}): a
+ * helper starts one ply deeper on odd ids and rotates its root move order, so the
+ * threads fill the table with different parts of the tree.
+ * <p>
+ * With a {@link Tablebase} set, positions with few enough pieces are scored from the
+ * tablebase instead of being searched.
+ * <p>
+ * The positions of the line being searched are kept in a {@link DrawDetector}, seeded
+ * with the game played so far when the caller supplies it. A position that repeats
+ * one already in the line or the game, or that reaches the no-capture limit, scores as
+ * a draw, so the search neither walks into a drawn shuffle while winning nor misses
+ * one while losing.
+ *
+ * @see Evaluator
+ */
+public final class AlphaBeta implements SearchEngine {
+    /** Score of a won position at the root; wins found deeper score slightly less. */
+    public static final int WIN = 100_000;
+    /** Bound larger than any score. */
+    private static final int INFINITY = 1_000_000;
+    /** Deepest iteration attempted. */
+    public static final int MAX_DEPTH = 64;
+    /** Nodes between two clock checks. */
+    private static final int CHECK_INTERVAL = 1023;
+    /** Transposition table size used by the no-argument constructor, in MB. */
+    public static final int DEFAULT_TABLE_MB = 16;
+    /** Scores at least this far from zero are forced wins or losses. */
+    private static final int WIN_BOUND = WIN - 1024;
+
+    /** Cache of searched positions, possibly shared with other searches. */
+    private final TranspositionTable table;
+    /** Solved endgames, or null. */
+    private Tablebase tablebase;
+    /** Most pieces of a position probed in {@link #tablebase}. */
+    private int tablebasePieces;
+
+    /** The position searched with make/unmake. */
+    private final Position pos = new Position();
+    /** The game and the line searched so far, pushed and popped with the moves. */
+    private final DrawDetector line = new DrawDetector();
+    /** One move buffer per ply. */
+    private final int[][] moves = new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+    /** One ordering-score buffer per ply. */
+    private final int[][] orderScores = new int[MAX_DEPTH + 1][MoveGenerator.MAX_MOVES];
+
+    /** Nodes visited by the current search. */
+    private long nodes;
+    /** System.nanoTime() at which the search must stop. */
+    private long deadline;
+    /** Set once the budget is exhausted; all scores after that are discarded. */
+    private boolean stopped;
+    /** Optional signal from another thread that ends the search early. */
+    private volatile AtomicBoolean stopSignal;
+    /** Lazy SMP helper id; 0 for a normal (main) search. */
+    private int helperId;
+    /** Whether a main search starts a new table generation; not when a {@link LazySmp} does. */
+    private boolean startsGeneration = true;
+
+    /** Depth of the last completed iteration. */
+    private int completedDepth;
+    /** Score of the last completed iteration, from the root player's point of view. */
+    private int score;
+    /** Duration of the last search in nanoseconds. */
+    private long elapsed;
+
+    /**
+     * Constructs a search with its own {@value #DEFAULT_TABLE_MB} MB transposition table.
+     */
+    public AlphaBeta () {
+        this(new TranspositionTable(DEFAULT_TABLE_MB));
+    }
+
+    /**
+     * Constructs a search using a given transposition table.
+     *
+     * @param table The table, which may be shared with other searches
+     */
+    public AlphaBeta (TranspositionTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public int bestMove (Position root, long millis) {
+        return search(root, null, millis, MAX_DEPTH);
+    }
+
+    @Override
+    public int bestMove (Position root, DrawDetector history, long millis) {
+        return search(root, history, millis, MAX_DEPTH);
+    }
+
+    /**
+     * Searches a position until the budget or the depth limit is reached.
+     *
+     * @param root The position to search (not modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param depthLimit The deepest iteration to run
+     * @return The best move found, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position root, long millis, int depthLimit) {
+        return search(root, null, millis, depthLimit);
+    }
+
+    /**
+     * Searches a position reached in a game until the budget or the depth limit is
+     * reached, scoring repetitions of the game's positions as draws.
+     *
+     * @param root The position to search (not modified)
+     * @param history The positions of the game up to the root, or null if unknown (not
+     *                modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param depthLimit The deepest iteration to run
+     * @return The best move found, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position root, DrawDetector history, long millis, int depthLimit) {
+        long start = System.nanoTime();
+        int[] rootMoves = moves[0];
+        int n, best = Move.NONE, depth, i;
+
+        pos.copyFrom(root);
+        if (history != null)
+            line.copyFrom(history);
+        else
+            line.reset(root.hash());
+        nodes = 0;
+        stopped = false;
+        completedDepth = 0;
+        score = 0;
+        deadline = start + millis * 1_000_000L;
+        if (helperId == 0 && startsGeneration) // helpers share the main search's generation
+            table.newSearch();
+
+        n = pos.winner() != 0 ? 0 : MoveGenerator.generate(pos, pos.getSideToMove(), rootMoves);
+        if (n > 0) {
+            order(rootMoves, orderScores[0], n);
+            if (helperId > 0)
+                rotate(rootMoves, n, helperId % n);
+            best = rootMoves[0];
+        }
+
+        for (depth = 1 + (helperId & 1); depth <= Math.min(depthLimit, MAX_DEPTH) && n > 0; depth++) {
+            int alpha = -INFINITY, iterationBest = Move.NONE;
+
+            for (i = 0; i < n; i++) {
+                pos.makeMove(rootMoves[i]);
+                line.push(pos, rootMoves[i]);
+                int value = -negamax(depth - 1, 1, -INFINITY, -alpha);
+                line.pop();
+                pos.unmakeMove();
+
+                if (stopped)
+                    break;
+                if (value > alpha) {
+                    alpha = value;
+                    iterationBest = rootMoves[i];
+                }
+            }
+            if (stopped)
+                break;
+
+            best = iterationBest;
+            score = alpha;
+            completedDepth = depth;
+            moveToFront(rootMoves, n, best);
+
+            if (Math.abs(score) >= WIN_BOUND) // forced result found
+                break;
+        }
+
+        elapsed = System.nanoTime() - start;
+        return best;
+    }
+
+    /**
+     * Negamax alpha-beta search of the private position.
+     *
+     * @param depth The remaining depth
+     * @param ply The distance from the root
+     * @param alpha The lower bound
+     * @param beta The upper bound
+     * @return The score from the point of view of the side to move
+     */
+    private int negamax (int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && (System.nanoTime() > deadline || isSignalled()))
+            stopped = true;
+        if (stopped)
+            return 0;
+
+        if (pos.winner() != 0) // the previous mover entered the den
+            return -(WIN - ply);
+        if (line.repetitions() > 1 || line.isDraw())
+            return 0;
+        if (tablebase != null && Long.bitCount(pos.occupied()) <= tablebasePieces) {
+            int value = tablebase.probe(pos);
+            if (value != Tablebase.UNKNOWN)
+                return Tablebase.isWin(value) ? WIN - ply - Tablebase.plies(value)
+                     : Tablebase.isLoss(value) ? -(WIN - ply - Tablebase.plies(value)) : 0;
+        }
+        if (depth == 0 || ply >= MAX_DEPTH)
+            return Evaluator.evaluate(pos, pos.getSideToMove());
+
+        long key = pos.hash();
+        long entry = table.probe(key);
+        int ttMove = Move.NONE, originalAlpha = alpha;
+
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int stored = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && stored >= beta)
+                        || (bound == TranspositionTable.UPPER && stored <= alpha))
+                    return stored;
+            }
+        }
+
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(pos, pos.getSideToMove(), list);
+        if (n == 0) // no legal move loses
+            return -(WIN - ply);
+        order(list, orderScores[ply], n);
+        if (ttMove != Move.NONE)
+            moveToFront(list, n, ttMove); // ignored if a key collision gave a foreign move
+
+        int best = -INFINITY, bestMove = Move.NONE;
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(list[i]);
+            line.push(pos, list[i]);
+            int value = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            line.pop();
+            pos.unmakeMove();
+
+            if (stopped)
+                return 0;
+            if (value > best) {
+                best = value;
+                bestMove = list[i];
+                if (value > alpha)
+                    alpha = value;
+                if (alpha >= beta)
+                    break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                  : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+        table.store(key, bestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    /**
+     * Converts a score to the form stored in the table: win scores count plies from the
+     * stored position instead of from the root.
+     *
+     * @param score The score relative to the root
+     * @param ply The distance of the position from the root
+     * @return The score to store
+     */
+    private static int toTable (int score, int ply) {
+        if (score >= WIN_BOUND)
+            return score + ply;
+        if (score <= -WIN_BOUND)
+            return score - ply;
+        return score;
+    }
+
+    /**
+     * Converts a stored score back to a score relative to the root.
+     *
+     * @param score The stored score
+     * @param ply The distance of the position from the root
+     * @return The score relative to the root
+     */
+    private static int fromTable (int score, int ply) {
+        if (score >= WIN_BOUND)
+            return score - ply;
+        if (score <= -WIN_BOUND)
+            return score + ply;
+        return score;
+    }
+
+    /**
+     * Sorts moves by descending ordering score (den entries, then captures by victim).
+     * Insertion sort is enough for at most {@link MoveGenerator#MAX_MOVES} moves.
+     *
+     * @param list The moves
+     * @param scores Scratch space for the ordering scores
+     * @param n The number of moves
+     */
+    private static void order (int[] list, int[] scores, int n) {
+        for (int i = 0; i < n; i++) {
+            int move = list[i], to = Move.to(move), s = 0;
+
+            if (to == Position.DEN_1 || to == Position.DEN_2)
+                s = 1000;
+            else if (Move.isCapture(move))
+                s = 100 + 10 * Position.typeOf(Move.captured(move)) - Position.typeOf(Move.piece(move));
+
+            int j = i;
+            while (j > 0 && scores[j - 1] < s) {
+                list[j] = list[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            list[j] = move;
+            scores[j] = s;
+        }
+    }
+
+    /**
+     * Checks if another thread asked this search to stop.
+     *
+     * @return true if the stop signal is set
+     */
+    private boolean isSignalled () {
+        AtomicBoolean signal = stopSignal;
+        return signal != null && signal.get();
+    }
+
+    /**
+     * Rotates a move list left by a number of places.
+     *
+     * @param list The moves
+     * @param n The number of moves
+     * @param by The number of places
+     */
+    private static void rotate (int[] list, int n, int by) {
+        for (int k = 0; k < by; k++) {
+            int first = list[0];
+            System.arraycopy(list, 1, list, 0, n - 1);
+            list[n - 1] = first;
+        }
+    }
+
+    /**
+     * Moves one move to the front of a list, keeping the order of the others.
+     *
+     * @param list The moves
+     * @param n The number of moves
+     * @param move The move to bring to the front
+     */
+    private static void moveToFront (int[] list, int n, int move) {
+        for (int i = 0; i < n; i++) {
+            if (list[i] == move) {
+                System.arraycopy(list, 0, list, 1, i);
+                list[0] = move;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the depth of the last completed iteration.
+     *
+     * @return The depth in plies
+     */
+    public int getDepth () {
+        return completedDepth;
+    }
+
+    /**
+     * Returns the nodes visited by the last search.
+     *
+     * @return The node count
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Returns the score of the last completed iteration.
+     *
+     * @return The score from the searching player's point of view
+     */
+    public int getScore () {
+        return score;
+    }
+
+    /**
+     * Returns the speed of the last search.
+     *
+     * @return Nodes per second
+     */
+    public long getNodesPerSecond () {
+        return elapsed == 0 ? 0 : nodes * 1_000_000_000L / elapsed;
+    }
+
+    /**
+     * Makes this search a Lazy SMP helper, or a main search for id 0.
+     *
+     * @param id The helper id
+     */
+    public void setHelperId (int id) {
+        helperId = id;
+    }
+
+    /**
+     * Chooses whether the search starts a new table generation itself. A
+     * {@link LazySmp} starts it once before any of its threads, so a helper never
+     * stores entries under the previous generation.
+     *
+     * @param starts true if a main search calls {@link TranspositionTable#newSearch()}
+     */
+    void setStartsGeneration (boolean starts) {
+        startsGeneration = starts;
+    }
+
+    /**
+     * Sets a flag that, once true, makes the running search stop at its next clock check.
+     *
+     * @param signal The flag, or null for none
+     */
+    public void setStopSignal (AtomicBoolean signal) {
+        stopSignal = signal;
+    }
+
+    /**
+     * Sets the endgame tablebase probed inside the tree.
+     *
+     * @param tablebase The tablebase, or null for none
+     */
+    public void setTablebase (Tablebase tablebase) {
+        this.tablebase = tablebase;
+        tablebasePieces = tablebase == null ? 0 : tablebase.getMaxPieces();
+    }
+
+    /**
+     * Returns the transposition table used by this search.
+     *
+     * @return The table
+     */
+    public TranspositionTable getTable () {
+        return table;
+    }
+
+    @Override
+    public String report () {
+        return String.format("depth %d, score %d, %d nodes, %d nodes/s, hash %d%%", completedDepth, score, nodes,
+                getNodesPerSecond(), table.hashfull() / 10);
+    }
+
+    @Override
+    public String name () {
+        return "Alpha-Beta";
+    }
+}
@@ -0,0 +1,51 @@
+package mpprog3.Engine;
+
+/**
+ * A search engine that plays from an {@link OpeningBook} while the position is in the
+ * book, and asks another engine otherwise.
+ */
+public final class BookEngine implements SearchEngine {
+    /** The book. */
+    private final OpeningBook book;
+    /** The engine used out of book. */
+    private final SearchEngine engine;
+    /** Whether the last move came from the book. */
+    private boolean fromBook;
+
+    /**
+     * Constructs a book-playing engine.
+     *
+     * @param book The opening book
+     * @param engine The engine used when the book has no move
+     */
+    public BookEngine (OpeningBook book, SearchEngine engine) {
+        this.book = book;
+        this.engine = engine;
+    }
+
+    @Override
+    public int bestMove (Position root, long millis) {
+        int move = book.probe(root);
+
+        fromBook = move != Move.NONE;
+        return fromBook ? move : engine.bestMove(root, millis);
+    }
+
+    @Override
+    public int bestMove (Position root, DrawDetector history, long millis) {
+        int move = book.probe(root);
+
+        fromBook = move != Move.NONE;
+        return fromBook ? move : engine.bestMove(root, history, millis);
+    }
+
+    @Override
+    public String report () {
+        return fromBook ? "book move" : engine.report();
+    }
+
+    @Override
+    public String name () {
+        return engine.name();
+    }
+}
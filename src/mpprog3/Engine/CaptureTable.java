@@ -0,0 +1,156 @@
+package mpprog3.Engine;
+
+import mpprog3.Model.Piece;
+import mpprog3.Model.elephant;
+import mpprog3.Model.lion;
+import mpprog3.Model.rat;
+import mpprog3.Model.tiger;
+
+import static mpprog3.Engine.Position.*;
+
+/**
+ * Precomputed answers to "can this piece capture that one", one array load per question.
+ * <p>
+ * The capture rules of the piece classes are spread over {@link Piece#capture},
+ * {@link Piece#canCapture}, {@link Piece#canBeCapturedBy} and the {@link rat} and
+ * {@link elephant} overrides, which read the mutable weak and terrain fields. For
+ * the engine they reduce to a table indexed by:
+ * <ul>
+ *   <li>The attacker type (3 bits)</li>
+ *   <li>The defender type (3 bits)</li>
+ *   <li>Whether the attacker is in the lake</li>
+ *   <li>Whether the defender is in the lake</li>
+ *   <li>Whether the defender is weakened by a trap</li>
+ * </ul>
+ * {@link #main(String[])} checks all {@value #SIZE} combinations against the classes.
+ *
+ * @see MoveGenerator#canCapture(Position, int, int, int)
+ */
+public final class CaptureTable {
+    /** Number of table entries. */
+    public static final int SIZE = TYPES * TYPES * 8;
+
+    /** The answers, by {@link #index(int, int, boolean, boolean, boolean)}. */
+    private static final boolean[] TABLE = new boolean[SIZE];
+
+    static {
+        for (int a = 0; a < TYPES; a++)
+            for (int d = 0; d < TYPES; d++)
+                for (int flags = 0; flags < 8; flags++)
+                    TABLE[a << 6 | d << 3 | flags] = rule(a, d, (flags & 4) != 0, (flags & 2) != 0, (flags & 1) != 0);
+    }
+
+    private CaptureTable () {
+    }
+
+    /**
+     * Computes one entry from the rules:
+     * <ol>
+     *   <li>A weakened defender always falls</li>
+     *   <li>The elephant takes anything but the rat</li>
+     *   <li>The rat only takes the rat</li>
+     *   <li>A rat in the lake is safe from animals that cannot swim</li>
+     *   <li>Otherwise the attacker needs equal or greater strength</li>
+     * </ol>
+     * The attacker's terrain only matters for a rat attacking an elephant, which rule 3
+     * already forbids.
+     */
+    private static boolean rule (int attacker, int defender, boolean attackerInWater, boolean defenderInWater,
+            boolean trapped) {
+        if (trapped)
+            return true;
+        if (attacker == ELEPHANT)
+            return defender != RAT;
+        if (attacker == RAT)
+            return defender == RAT;
+        if (defender == RAT && defenderInWater)
+            return false;
+        return attacker >= defender;
+    }
+
+    /**
+     * Returns the table index of a capture.
+     *
+     * @param attacker The attacker type (0-7)
+     * @param defender The defender type (0-7)
+     * @param attackerInWater Whether the attacker is in the lake
+     * @param defenderInWater Whether the defender is in the lake
+     * @param trapped Whether the defender is weakened by a trap
+     * @return The index, 0 to {@value #SIZE} - 1
+     */
+    public static int index (int attacker, int defender, boolean attackerInWater, boolean defenderInWater,
+            boolean trapped) {
+        return attacker << 6 | defender << 3 | (attackerInWater ? 4 : 0) | (defenderInWater ? 2 : 0) | (trapped ? 1 : 0);
+    }
+
+    /**
+     * Decides whether a piece may capture another.
+     *
+     * @param attacker The attacker type (0-7)
+     * @param defender The defender type (0-7)
+     * @param attackerInWater Whether the attacker is in the lake
+     * @param defenderInWater Whether the defender is in the lake
+     * @param trapped Whether the defender is weakened by a trap
+     * @return true if the capture is allowed
+     */
+    public static boolean canCapture (int attacker, int defender, boolean attackerInWater, boolean defenderInWater,
+            boolean trapped) {
+        return TABLE[index(attacker, defender, attackerInWater, defenderInWater, trapped)];
+    }
+
+    /**
+     * Creates a piece object of a type.
+     *
+     * @param type The type (0-7)
+     * @param player The player (1 or 2)
+     * @return A new piece of the matching class
+     */
+    private static Piece create (int type, int player) {
+        String[] names = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
+
+        switch (type) {
+            case RAT:
+                return new rat(player);
+            case TIGER:
+                return new tiger(player);
+            case LION:
+                return new lion(player);
+            case ELEPHANT:
+                return new elephant(player);
+            default:
+                return new Piece(names[type] + (player == 1 ? "-blue" : "-green"), type + 1, player);
+        }
+    }
+
+    /**
+     * Checks every entry of the table against {@link Piece#capture} on fresh piece
+     * objects and prints any disagreement.
+     *
+     * @param args Not used
+     */
+    public static void main (String[] args) {
+        int mismatches = 0;
+
+        for (int index = 0; index < SIZE; index++) {
+            int a = index >>> 6, d = index >>> 3 & 7;
+            boolean attackerInWater = (index & 4) != 0, defenderInWater = (index & 2) != 0, trapped = (index & 1) != 0;
+            Piece attacker = create(a, 1), defender = create(d, 2);
+
+            attacker.setCurrentTerrain(attackerInWater ? '~' : '.');
+            defender.setCurrentTerrain(defenderInWater ? '~' : '.');
+            if (trapped)
+                defender.setWeak();
+
+            boolean expected = attacker.capture(defender);
+            if (TABLE[index] != expected) {
+                mismatches++;
+                System.out.printf("%s%s x %s%s%s: table %b, classes %b%n", Move.letter(a),
+                        attackerInWater ? " (lake)" : "", Move.letter(d), defenderInWater ? " (lake)" : "",
+                        trapped ? " (trapped)" : "", TABLE[index], expected);
+            }
+        }
+        System.out.println(SIZE + " combinations checked, " + mismatches + " mismatches");
+        if (mismatches > 0)
+            System.exit(1);
+    }
+}
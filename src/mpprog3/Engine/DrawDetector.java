@@ -0,0 +1,254 @@
+package mpprog3.Engine;
+
+/**
+ * Detects drawn games: a position repeated three times, or {@value #DEFAULT_QUIET_PLIES}
+ * plies (by default) without a capture.
+ * <p>
+ * The {@link Position#hash()} keys of the recorded positions are kept in a ring buffer
+ * of {@code long}s, together with a small open-addressing table that counts how often
+ * each key occurs. Recording a position and asking whether it is a draw are O(1)
+ * amortized, and nothing is allocated after construction. Positions from before a
+ * capture can never come back, since a piece has left the board, so when the ring is
+ * full it keeps only its newest half, which is more than twice the no-capture limit.
+ * <p>
+ * Records can be undone with {@link #pop()} in O(1), so a search can push and pop the
+ * positions of its current line as it makes and unmakes moves. Positions dropped from
+ * the ring cannot be popped back; a line of {@link #capacity()} / 2 minus the limit
+ * plies can be searched from any ring without losing a position that can still repeat.
+ *
+ * @see Position#hash()
+ */
+public final class DrawDetector {
+    /** Repetitions of one position that draw the game. */
+    public static final int REPETITIONS = 3;
+    /** Default plies without a capture that draw the game. */
+    public static final int DEFAULT_QUIET_PLIES = 100;
+
+    /** Plies without a capture that draw the game. */
+    private final int quietLimit;
+    /** Recorded keys, by record number modulo the ring size. */
+    private final long[] keys;
+    /** Plies since the last capture, for each recorded key. */
+    private final int[] quiet;
+    /** Occurrences of each recorded key in the ring when it was recorded, itself included. */
+    private final int[] seen;
+    /** Count table slot of each recorded key. */
+    private final int[] slots;
+    /** Key of each slot of the count table; a slot is free when its count is 0. */
+    private final long[] slotKeys;
+    /** Occurrences of the key of each slot in the ring. */
+    private final int[] slotCounts;
+    /** Number of positions recorded and not popped; the ring holds the last ones. */
+    private long size;
+    /** Number of positions recorded and still in the ring. */
+    private int held;
+
+    /**
+     * Constructs a detector with the default no-capture limit.
+     */
+    public DrawDetector () {
+        this(DEFAULT_QUIET_PLIES);
+    }
+
+    /**
+     * Constructs a detector.
+     *
+     * @param quietLimit The plies without a capture that draw the game
+     */
+    public DrawDetector (int quietLimit) {
+        if (quietLimit < 1)
+            throw new IllegalArgumentException("no-capture limit must be positive: " + quietLimit);
+        this.quietLimit = quietLimit;
+        int capacity = Integer.highestOneBit(quietLimit) << 3; // half of it is over twice quietLimit
+        keys = new long[capacity];
+        quiet = new int[capacity];
+        seen = new int[capacity];
+        slots = new int[capacity];
+        slotKeys = new long[capacity * 2]; // at most half full
+        slotCounts = new int[capacity * 2];
+    }
+
+    /**
+     * Constructs a copy of another detector.
+     *
+     * @param other The detector to copy
+     */
+    public DrawDetector (DrawDetector other) {
+        this(other.quietLimit);
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrites this detector with the records of another with the same limit, without
+     * allocating.
+     *
+     * @param other The detector to copy
+     */
+    public void copyFrom (DrawDetector other) {
+        if (other.quietLimit != quietLimit)
+            throw new IllegalArgumentException("no-capture limits differ: " + other.quietLimit + " and " + quietLimit);
+        System.arraycopy(other.keys, 0, keys, 0, keys.length);
+        System.arraycopy(other.quiet, 0, quiet, 0, quiet.length);
+        System.arraycopy(other.seen, 0, seen, 0, seen.length);
+        System.arraycopy(other.slots, 0, slots, 0, slots.length);
+        System.arraycopy(other.slotKeys, 0, slotKeys, 0, slotKeys.length);
+        System.arraycopy(other.slotCounts, 0, slotCounts, 0, slotCounts.length);
+        size = other.size;
+        held = other.held;
+    }
+
+    /**
+     * Forgets every position and records the starting position of a game.
+     *
+     * @param key The hash of the starting position
+     */
+    public void reset (long key) {
+        java.util.Arrays.fill(slotCounts, 0);
+        size = 0;
+        held = 0;
+        push(key, true);
+    }
+
+    /**
+     * Records the position after a move.
+     *
+     * @param key The hash of the position
+     * @param capture Whether the move captured a piece
+     */
+    public void push (long key, boolean capture) {
+        int mask = keys.length - 1;
+
+        if (held == keys.length)
+            compact();
+        int top = (int) size & mask;
+        quiet[top] = capture || held == 0 ? 0 : quiet[(int) (size - 1) & mask] + 1;
+        keys[top] = key;
+        add(top);
+        size++;
+        held++;
+    }
+
+    /**
+     * Records the position after a move, as played on a position.
+     *
+     * @param pos The position, after the move
+     * @param move The packed move just played
+     */
+    public void push (Position pos, int move) {
+        push(pos.hash(), Move.isCapture(move));
+    }
+
+    /**
+     * Forgets the last position recorded.
+     *
+     * @throws IllegalStateException if no position recorded in the ring is left
+     */
+    public void pop () {
+        if (held == 0)
+            throw new IllegalStateException("nothing to pop");
+        size--;
+        held--;
+        slotCounts[slots[(int) size & (keys.length - 1)]]--; // the newest count of the key
+    }
+
+    /**
+     * Returns how many times the last position recorded has occurred since the last
+     * capture, itself included.
+     *
+     * @return 1 for a new position, or 0 if nothing is recorded
+     */
+    public int repetitions () {
+        return held == 0 ? 0 : seen[(int) (size - 1) & (keys.length - 1)];
+    }
+
+    /**
+     * Returns the plies played since the last capture.
+     *
+     * @return The plies, or 0 if nothing is recorded
+     */
+    public int quietPlies () {
+        return held == 0 ? 0 : quiet[(int) (size - 1) & (keys.length - 1)];
+    }
+
+    /**
+     * Tells whether the last position recorded draws the game.
+     *
+     * @return true after a threefold repetition or the no-capture limit
+     */
+    public boolean isDraw () {
+        return repetitions() >= REPETITIONS || quietPlies() >= quietLimit;
+    }
+
+    /**
+     * Describes why the game is drawn.
+     *
+     * @return {@code "repetition"}, {@code "no captures"}, or null if it is not drawn
+     */
+    public String reason () {
+        if (repetitions() >= REPETITIONS)
+            return "repetition";
+        return quietPlies() >= quietLimit ? "no captures" : null;
+    }
+
+    /**
+     * Returns the size of the ring.
+     *
+     * @return The most positions held
+     */
+    public int capacity () {
+        return keys.length;
+    }
+
+    /**
+     * Returns how many positions can be pushed before the ring drops older ones. Up to
+     * that many pushes can all be popped again.
+     *
+     * @return The free entries of the ring
+     */
+    public int room () {
+        return keys.length - held;
+    }
+
+    /**
+     * Drops the older positions of a ring that is more than half full, keeping the
+     * newest half, so that at least half of it is free.
+     */
+    public void trim () {
+        if (held > keys.length / 2)
+            compact();
+    }
+
+    /**
+     * Drops the older positions of the ring, keeping the newest half, and counts them
+     * again.
+     */
+    private void compact () {
+        int mask = keys.length - 1;
+
+        java.util.Arrays.fill(slotCounts, 0);
+        held = keys.length / 2;
+        for (long i = size - held; i < size; i++)
+            add((int) i & mask);
+    }
+
+    /**
+     * Counts one more occurrence of a recorded key and notes its slot.
+     * <p>
+     * Keys are counted and uncounted in last-in first-out order, so a slot that
+     * {@link #pop()} brings back to zero was taken by the key being popped, after every
+     * key still counted; freeing it breaks no probe sequence.
+     *
+     * @param entry The index of the key in the ring
+     */
+    private void add (int entry) {
+        long key = keys[entry];
+        int mask = slotKeys.length - 1;
+        int slot = (int) ((key ^ key >>> 32) * 0x9E3779B97F4A7C15L >>> 40) & mask;
+
+        while (slotCounts[slot] != 0 && slotKeys[slot] != key)
+            slot = slot + 1 & mask;
+        slotKeys[slot] = key;
+        seen[entry] = ++slotCounts[slot];
+        slots[entry] = slot;
+    }
+}
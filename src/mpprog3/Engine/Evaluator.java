@@ -0,0 +1,350 @@
+package mpprog3.Engine;
+
+import static mpprog3.Engine.Position.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Static evaluation of Jungle King positions for the search engines.
+ * <p>
+ * Most of the score is a sum of one value per piece on the board, looked up by piece
+ * and square in a piece-square table. Each value adds:
+ * <ul>
+ *   <li>Material: a base value plus a value per point of strength (the
+ *       {@code Piece.getStrength()} of the type, rat 1 to elephant 8), plus a bonus for
+ *       the lion and tiger, which jump the lakes</li>
+ *   <li>Progress: a bonus per square of Manhattan distance gained toward the enemy
+ *       den, and another on the squares next to it</li>
+ *   <li>Trap safety: a penalty on the enemy traps, where the piece is weakened, and a
+ *       bonus next to the piece's own traps, which it guards</li>
+ *   <li>A bonus for the rat in the lake, where only the other rat can reach it</li>
+ * </ul>
+ * The positional part of a type's table can instead be given square by square. The
+ * tables are built once, and {@link Position} keeps the sum of the values of its
+ * pieces up to date as pieces are put and removed, like its {@link Zobrist} key, so
+ * this part costs nothing at evaluation time. The rat and elephant terms depend on
+ * pairs of pieces and are added when evaluating: a bonus for a rat while the enemy
+ * elephant is on the board, and for an elephant once the enemy rat is captured.
+ * <p>
+ * The weights are read when the class is loaded, from the file named by the system
+ * property {@value #WEIGHTS_PROPERTY}, or else {@value #WEIGHTS_FILE} if it exists, so
+ * they can be tuned without a rebuild. Missing keys keep their defaults; see that
+ * file for the keys. Since every {@link Position} needs the tables, a file that cannot
+ * be read or holds a bad weight does not stop the program: a warning is printed and
+ * all the defaults are used instead. {@link #main(String[])} fails on it.
+ */
+public final class Evaluator {
+    /** Default weights file, relative to the working directory. */
+    public static final String WEIGHTS_FILE = "eval/weights.properties";
+    /** System property naming another weights file. */
+    public static final String WEIGHTS_PROPERTY = "mpprog3.weights";
+
+    /** Animal names by type, as used in the weight keys. */
+    private static final String[] ANIMALS = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
+    /** Weight keys and their default values. */
+    private static final String[][] DEFAULTS = {
+        {"material.base", "100"},
+        {"material.strength", "100"},
+        {"material.jumper", "100"},
+        {"advance", "4"},
+        {"den.adjacent", "50"},
+        {"trap.enemy", "-100"},
+        {"trap.guard", "10"},
+        {"rat.lake", "20"},
+        {"rat.elephant", "150"},
+        {"elephant.rat", "100"},
+    };
+    /** Largest Manhattan distance from any square to a den. */
+    private static final int MAX_DISTANCE = 11;
+
+    /** Values from player 1's point of view, indexed by {@code piece << 6 | square}. */
+    private static final int[] TABLE = new int[PIECES << 6];
+    /** Bonus for a rat while the enemy elephant is on the board. */
+    private static final int RAT_ELEPHANT;
+    /** Bonus for an elephant once the enemy rat is captured. */
+    private static final int ELEPHANT_RAT;
+    /** Where the weights were read from, or null for the defaults. */
+    private static final Path SOURCE;
+    /** Why the weights file was rejected, or null if it was not. */
+    private static final String ERROR;
+
+    static {
+        Properties weights = new Properties();
+        Path source = null;
+        String error = null;
+        int ratElephant, elephantRat;
+
+        try {
+            source = load(weights);
+            build(weights);
+            ratElephant = weight(weights, "rat.elephant");
+            elephantRat = weight(weights, "elephant.rat");
+        }
+        catch (IOException | IllegalArgumentException e) {
+            error = e.getMessage();
+            System.err.println("Warning: " + error + "; using the default evaluation weights");
+            weights.clear();
+            source = null;
+            build(weights);
+            ratElephant = weight(weights, "rat.elephant");
+            elephantRat = weight(weights, "elephant.rat");
+        }
+        SOURCE = source;
+        ERROR = error;
+        RAT_ELEPHANT = ratElephant;
+        ELEPHANT_RAT = elephantRat;
+    }
+
+    private Evaluator () {
+    }
+
+    /**
+     * Reads the weights file, if any.
+     *
+     * @param weights The properties to fill
+     * @return The file read, or null if there is none
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file name is not a valid path or the file
+     *         is malformed
+     */
+    private static Path load (Properties weights) throws IOException {
+        String name = System.getProperty(WEIGHTS_PROPERTY);
+        Path file = Paths.get(name != null ? name : WEIGHTS_FILE);
+
+        if (name == null && !Files.isRegularFile(file))
+            return null;
+        try (Reader in = Files.newBufferedReader(file)) {
+            weights.load(in);
+        }
+        catch (IOException e) {
+            throw new IOException("cannot read evaluation weights " + file + ": " + e, e);
+        }
+        return file;
+    }
+
+    /**
+     * Fills the piece-square tables from the weights.
+     *
+     * @param weights The weights read, without the defaults
+     * @throws IllegalArgumentException if a key is unknown or a value is not a whole number
+     */
+    private static void build (Properties weights) {
+        for (String key : weights.stringPropertyNames())
+            if (!key.startsWith("pst.") && lookup(key) == null
+                    || key.startsWith("pst.") && java.util.Arrays.asList(ANIMALS).indexOf(key.substring(4)) < 0)
+                throw new IllegalArgumentException("unknown evaluation weight " + key);
+
+        int base = weight(weights, "material.base"), strength = weight(weights, "material.strength");
+        int jumper = weight(weights, "material.jumper"), advance = weight(weights, "advance");
+        int denAdjacent = weight(weights, "den.adjacent"), trapEnemy = weight(weights, "trap.enemy");
+        int trapGuard = weight(weights, "trap.guard"), ratLake = weight(weights, "rat.lake");
+        int target = den(2); // the den player 1 attacks
+
+        for (int type = 0; type < TYPES; type++) {
+            int material = base + strength * (type + 1) + (type == TIGER || type == LION ? jumper : 0);
+            int[] given = squares(weights, "pst." + ANIMALS[type]);
+
+            for (int sq = 0; sq < SQUARES; sq++) {
+                int value;
+
+                if (given != null) {
+                    value = given[sq];
+                }
+                else {
+                    int distance = Math.abs(row(sq) - row(target)) + Math.abs(col(sq) - col(target));
+                    value = (MAX_DISTANCE - distance) * advance;
+                    if (distance == 1)
+                        value += denAdjacent;
+                    if ((enemyTraps(1) >>> sq & 1L) != 0)
+                        value += trapEnemy;
+                    if ((neighbours(enemyTraps(2)) >>> sq & 1L) != 0)
+                        value += trapGuard;
+                    if (type == RAT && isLake(sq))
+                        value += ratLake;
+                }
+                // player 2's table is player 1's turned half a turn, as the board is
+                TABLE[index(1, type) << 6 | sq] = material + value;
+                TABLE[index(2, type) << 6 | (SQUARES - 1 - sq)] = -(material + value);
+            }
+        }
+    }
+
+    /**
+     * Returns the squares next to a set of squares.
+     *
+     * @param squares The squares
+     * @return Every square orthogonally adjacent to one of them
+     */
+    private static long neighbours (long squares) {
+        long result = 0;
+
+        for (long rest = squares; rest != 0; rest &= rest - 1) {
+            int sq = Long.numberOfTrailingZeros(rest), r = row(sq), c = col(sq);
+            if (r > 0)
+                result |= bit(r - 1, c);
+            if (r < ROWS - 1)
+                result |= bit(r + 1, c);
+            if (c > 0)
+                result |= bit(r, c - 1);
+            if (c < COLS - 1)
+                result |= bit(r, c + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the default value of a weight.
+     *
+     * @param key The key
+     * @return The default, or null if the key is unknown
+     */
+    private static String lookup (String key) {
+        for (String[] entry : DEFAULTS)
+            if (entry[0].equals(key))
+                return entry[1];
+        return null;
+    }
+
+    /**
+     * Reads one weight.
+     *
+     * @param weights The weights read
+     * @param key The key
+     * @return The value, or its default
+     * @throws IllegalArgumentException if the value is not a whole number
+     */
+    private static int weight (Properties weights, String key) {
+        String value = weights.getProperty(key, lookup(key)).trim();
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("evaluation weight " + key + " is not a whole number: " + value);
+        }
+    }
+
+    /**
+     * Reads a piece-square table given square by square.
+     *
+     * @param weights The weights read
+     * @param key The key
+     * @return The {@value Position#SQUARES} values from player 1's point of view, row 0
+     *         first, or null if the key is absent
+     * @throws IllegalArgumentException if there are not exactly that many whole numbers
+     */
+    private static int[] squares (Properties weights, String key) {
+        String text = weights.getProperty(key);
+        if (text == null)
+            return null;
+
+        String[] fields = text.trim().split("[\\s,]+");
+        if (fields.length != SQUARES)
+            throw new IllegalArgumentException(key + " has " + fields.length + " values instead of " + SQUARES);
+        int[] values = new int[SQUARES];
+        for (int sq = 0; sq < SQUARES; sq++) {
+            try {
+                values[sq] = Integer.parseInt(fields[sq]);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + ": not a whole number: " + fields[sq]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Returns the value of a piece on a square. {@link Position} adds it up as pieces
+     * are put and removed.
+     *
+     * @param piece The piece index (0-15)
+     * @param sq The square (0-62)
+     * @return The value from player 1's point of view (negative for player 2's pieces)
+     */
+    static int value (int piece, int sq) {
+        return TABLE[piece << 6 | sq];
+    }
+
+    /**
+     * Evaluates a position.
+     *
+     * @param pos The position
+     * @param player The player (1 or 2) whose point of view is used
+     * @return Positive if the position favors that player
+     */
+    public static int evaluate (Position pos, int player) {
+        int score = pos.score();
+
+        for (int p = 1; p <= 2; p++) {
+            int sign = p == 1 ? 1 : -1, enemy = opponent(p);
+            if (pos.pieces(p, RAT) != 0 && pos.pieces(enemy, ELEPHANT) != 0)
+                score += sign * RAT_ELEPHANT;
+            if (pos.pieces(p, ELEPHANT) != 0 && pos.pieces(enemy, RAT) == 0)
+                score += sign * ELEPHANT_RAT;
+        }
+        return player == 1 ? score : -score;
+    }
+
+    /**
+     * Adds up the table values of every piece of a position, as {@link Position#score()}
+     * keeps them incrementally.
+     *
+     * @param pos The position
+     * @return The sum from player 1's point of view
+     */
+    static int sum (Position pos) {
+        int score = 0;
+
+        for (int piece = 0; piece < PIECES; piece++) {
+            int sq = pos.squareOf(piece);
+            if (sq < SQUARES)
+                score += value(piece, sq);
+        }
+        return score;
+    }
+
+    /**
+     * Prints the tables of player 1 and checks the incremental score against a full
+     * sum through random games, including after unmaking the moves.
+     *
+     * @param args Ignored
+     * @throws IllegalStateException if the weights file was rejected
+     */
+    public static void main (String[] args) {
+        if (ERROR != null)
+            throw new IllegalStateException(ERROR);
+        System.out.println("weights: " + (SOURCE == null ? "defaults" : SOURCE));
+        for (int type = 0; type < TYPES; type++) {
+            System.out.println(ANIMALS[type] + ":");
+            for (int r = 0; r < ROWS; r++) {
+                StringBuilder line = new StringBuilder();
+                for (int c = 0; c < COLS; c++)
+                    line.append(String.format("%6d", value(index(1, type), square(r, c))));
+                System.out.println(line);
+            }
+        }
+
+        RandomGames games = new RandomGames(1);
+        long positions = 0;
+        for (int game = 0; game < 1000; game++) {
+            Position pos = games.newGame();
+            if (pos.score() != 0)
+                throw new AssertionError("the starting layout is not balanced: " + pos.score());
+            while (games.step()) {
+                if (pos.score() != sum(pos))
+                    throw new AssertionError("incremental score " + pos.score() + " != " + sum(pos));
+                positions++;
+            }
+            while (pos.historySize() > 0) {
+                pos.unmakeMove();
+                if (pos.score() != sum(pos))
+                    throw new AssertionError("score after unmake " + pos.score() + " != " + sum(pos));
+            }
+        }
+        System.out.println(positions + " positions checked");
+    }
+}
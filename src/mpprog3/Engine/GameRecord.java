@@ -0,0 +1,263 @@
+package mpprog3.Engine;
+
+import java.util.Arrays;
+import mpprog3.Controller.board;
+
+/**
+ * One recorded game, and the binary and text encodings of game records.
+ * <p>
+ * A move is stored in one byte: the piece index (4 bits) and the direction it moved
+ * (2 bits), {@code piece << 2 | direction}. The squares follow from the position, since
+ * every piece has at most one move in each direction; a lake jump is the move towards
+ * the lake. A binary record file is:
+ * <ul>
+ *   <li>A header: the magic number {@code "JKGR"} and a version byte</li>
+ *   <li>Any number of games, each a start byte {@code 0x80 | first player}, one byte
+ *       per move, and an end byte {@code 0xC0 | result}, where the result is 0 for a
+ *       draw, 1 or 2 for the winner and 3 for an unfinished game</li>
+ * </ul>
+ * so a game costs one byte per ply plus two. The text notation writes one game per
+ * line: {@code ...} first if player 2 moved first, the moves as printed by
+ * {@link Move#toString(int)}, and {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or
+ * {@code *}. Lines starting with player 1 are the format read by
+ * {@link OpeningBookBuilder}.
+ *
+ * @see GameRecordWriter
+ * @see GameRecordReader
+ */
+public final class GameRecord {
+    /** File magic, "JKGR". */
+    public static final int MAGIC = 0x4A4B4752;
+    /** File format version. */
+    public static final int VERSION = 1;
+    /** File name extension of binary records. */
+    public static final String EXTENSION = ".jkg";
+    /** Result of a game that has not ended. */
+    public static final int UNFINISHED = -1;
+
+    /** Start byte of a game, or'ed with the first player. */
+    static final int GAME_START = 0x80;
+    /** End byte of a game, or'ed with the result code. */
+    static final int GAME_END = 0xC0;
+    /** Mask of the marker bits of a start or end byte. */
+    static final int MARKER = 0xC0;
+    /** Result code of an unfinished game. */
+    private static final int UNFINISHED_CODE = 3;
+    /** Text marking a game that player 2 started. */
+    private static final String SECOND_FIRST = "...";
+
+    /** The player who moved first. */
+    private final int firstPlayer;
+    /** The packed moves. */
+    private int[] moves = new int[64];
+    /** The number of moves. */
+    private int length;
+    /** The winner, 0 for a draw, or {@link #UNFINISHED}. */
+    private int result = UNFINISHED;
+
+    /**
+     * Constructs an empty, unfinished game.
+     *
+     * @param firstPlayer The player who moves first (1 or 2)
+     */
+    public GameRecord (int firstPlayer) {
+        if (firstPlayer != 1 && firstPlayer != 2)
+            throw new IllegalArgumentException("first player must be 1 or 2: " + firstPlayer);
+        this.firstPlayer = firstPlayer;
+    }
+
+    /**
+     * Appends a move.
+     *
+     * @param move The packed move
+     */
+    public void add (int move) {
+        if (length == moves.length)
+            moves = Arrays.copyOf(moves, length * 2);
+        moves[length++] = move;
+    }
+
+    /**
+     * Sets the result.
+     *
+     * @param result The winner (1 or 2), 0 for a draw, or {@link #UNFINISHED}
+     */
+    public void setResult (int result) {
+        checkResult(result);
+        this.result = result;
+    }
+
+    /**
+     * Returns the player who moved first.
+     *
+     * @return 1 or 2
+     */
+    public int getFirstPlayer () {
+        return firstPlayer;
+    }
+
+    /**
+     * Returns a move.
+     *
+     * @param i The ply, from 0
+     * @return The packed move
+     */
+    public int getMove (int i) {
+        return moves[i];
+    }
+
+    /**
+     * Returns the number of moves.
+     *
+     * @return The number of plies played
+     */
+    public int length () {
+        return length;
+    }
+
+    /**
+     * Returns the result.
+     *
+     * @return The winner (1 or 2), 0 for a draw, or {@link #UNFINISHED}
+     */
+    public int getResult () {
+        return result;
+    }
+
+    /**
+     * Encodes a move in one byte.
+     *
+     * @param move The packed move
+     * @return {@code piece << 2 | direction}, 0 to 63
+     */
+    public static int encode (int move) {
+        return Move.piece(move) << 2 | MoveGenerator.direction(Move.from(move), Move.to(move));
+    }
+
+    /**
+     * Decodes a move byte in a position.
+     *
+     * @param pos The position the move is played from
+     * @param code The byte written by {@link #encode(int)}
+     * @return The packed move, or {@link Move#NONE} if it is not legal there
+     */
+    public static int decode (Position pos, int code) {
+        int piece = code >>> 2, from = pos.squareOf(piece);
+
+        if (code >>> 6 != 0 || from >= Position.SQUARES || Position.playerOf(piece) != pos.getSideToMove())
+            return Move.NONE;
+        return MoveGenerator.stepMove(pos, from, code & 3);
+    }
+
+    /**
+     * Returns the byte marking the end of a game.
+     *
+     * @param result The winner (1 or 2), 0 for a draw, or {@link #UNFINISHED}
+     * @return The end byte
+     */
+    static int endByte (int result) {
+        checkResult(result);
+        return GAME_END | (result == UNFINISHED ? UNFINISHED_CODE : result);
+    }
+
+    /**
+     * Returns the result stored in an end byte.
+     *
+     * @param b The end byte
+     * @return The winner (1 or 2), 0 for a draw, or {@link #UNFINISHED}
+     */
+    static int resultOf (int b) {
+        int code = b & 3;
+        return code == UNFINISHED_CODE ? UNFINISHED : code;
+    }
+
+    /**
+     * Checks a result value.
+     *
+     * @param result The result
+     * @throws IllegalArgumentException if it is not a winner, a draw or unfinished
+     */
+    private static void checkResult (int result) {
+        if (result < UNFINISHED || result > 2)
+            throw new IllegalArgumentException("bad result: " + result);
+    }
+
+    /**
+     * Formats a result.
+     *
+     * @param result The winner (1 or 2), 0 for a draw, or {@link #UNFINISHED}
+     * @return {@code 1-0}, {@code 0-1}, {@code 1/2-1/2} or {@code *}
+     */
+    public static String resultText (int result) {
+        switch (result) {
+            case 1:
+                return "1-0";
+            case 2:
+                return "0-1";
+            case 0:
+                return "1/2-1/2";
+            default:
+                return "*";
+        }
+    }
+
+    /**
+     * Formats the game in the text notation.
+     *
+     * @return One line, without a line separator
+     */
+    public String toText () {
+        StringBuilder text = new StringBuilder(length * 7 + 8);
+
+        if (firstPlayer == 2)
+            text.append(SECOND_FIRST).append(' ');
+        for (int i = 0; i < length; i++)
+            text.append(Move.toString(moves[i])).append(' ');
+        return text.append(resultText(result)).toString();
+    }
+
+    /**
+     * Parses a game in the text notation, checking every move.
+     *
+     * @param line The line
+     * @return The game
+     * @throws IllegalArgumentException if a move is illegal or the result is missing
+     */
+    public static GameRecord parse (String line) {
+        String[] tokens = line.trim().split("\\s+");
+        int first = tokens.length > 0 && tokens[0].equals(SECOND_FIRST) ? 1 : 0, last = tokens.length - 1;
+        GameRecord game = new GameRecord(first == 1 ? 2 : 1);
+        Position pos = new board().getPosition();
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+
+        pos.setSideToMove(game.firstPlayer);
+        for (int i = first; i < last; i++) {
+            int n = MoveGenerator.generate(pos, pos.getSideToMove(), legal), move = Move.NONE;
+            for (int j = 0; j < n && move == Move.NONE; j++)
+                if (Move.toString(legal[j]).equals(tokens[i]))
+                    move = legal[j];
+            if (move == Move.NONE)
+                throw new IllegalArgumentException("illegal move " + tokens[i] + " at ply " + (i - first + 1));
+            pos.makeMove(move);
+            game.add(move);
+        }
+
+        switch (last < first ? "" : tokens[last]) {
+            case "1-0":
+                game.result = 1;
+                break;
+            case "0-1":
+                game.result = 2;
+                break;
+            case "1/2-1/2":
+                game.result = 0;
+                break;
+            case "*":
+                game.result = UNFINISHED;
+                break;
+            default:
+                throw new IllegalArgumentException("missing result at the end of: " + line);
+        }
+        return game;
+    }
+}
@@ -0,0 +1,259 @@
+package mpprog3.Engine;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import mpprog3.Controller.board;
+import mpprog3.Model.Piece;
+
+/**
+ * Reads a binary record file written by {@link GameRecordWriter} and replays its games
+ * through a {@link board}.
+ * <p>
+ * The file is read in blocks, one game at a time: {@link #nextGame()} sets up a board
+ * at the start of the next game and {@link #nextMove()} plays its moves one by one with
+ * {@link board#movePiece} and {@link board#trapped}, like the Swing board, so a replay
+ * checks every move against the rules. Memory use does not depend on the archive size.
+ * <pre>
+ * try (GameRecordReader reader = new GameRecordReader(file)) {
+ *     board b;
+ *     while ((b = reader.nextGame()) != null)
+ *         while (reader.nextMove() != Move.NONE)
+ *             ... // b holds the position after the move
+ * }
+ * </pre>
+ *
+ * @see GameRecord
+ */
+public final class GameRecordReader implements Closeable {
+    /** Size of the input buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The source. */
+    private final InputStream in;
+    /** Bytes read ahead. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** Position of the next byte in the buffer. */
+    private int next;
+    /** Number of bytes in the buffer. */
+    private int limit;
+    /** Offset in the file of the first byte in the buffer, for error messages. */
+    private long offset;
+
+    /** The board of the current game, or null. */
+    private board board;
+    /** The player who moved first in the current game. */
+    private int firstPlayer;
+    /** The result of the current game, once its end has been read. */
+    private int result = GameRecord.UNFINISHED;
+    /** Whether the current game's moves have all been read. */
+    private boolean ended = true;
+
+    /**
+     * Opens a record file.
+     *
+     * @param file The file
+     * @throws IOException if the file cannot be read or has no valid header
+     */
+    public GameRecordReader (Path file) throws IOException {
+        this(Files.newInputStream(file));
+    }
+
+    /**
+     * Constructs a reader on a stream holding a record file.
+     *
+     * @param in The stream, closed with the reader
+     * @throws IOException if the stream cannot be read or has no valid header
+     */
+    public GameRecordReader (InputStream in) throws IOException {
+        this.in = in;
+        int magic = read() << 24 | read() << 16 | read() << 8 | read();
+        if (magic != GameRecord.MAGIC)
+            throw new IOException("not a game record file");
+        int version = read();
+        if (version != GameRecord.VERSION)
+            throw new IOException("unsupported game record version " + version);
+    }
+
+    /**
+     * Reads the next byte.
+     *
+     * @return The byte (0-255), or -1 at the end of the file
+     * @throws IOException if the stream cannot be read
+     */
+    private int read () throws IOException {
+        if (next == limit) {
+            offset += limit;
+            next = 0;
+            limit = Math.max(0, in.read(buffer));
+            if (limit == 0)
+                return -1;
+        }
+        return buffer[next++] & 0xFF;
+    }
+
+    /**
+     * Starts the next game, skipping any moves of the current game not read yet.
+     *
+     * @return A new board at the start of the game, with the first player to move,
+     *         or null at the end of the file
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public board nextGame () throws IOException {
+        while (!ended)
+            nextMove();
+
+        int b = read();
+        if (b == -1)
+            return null;
+        if ((b & GameRecord.MARKER) != GameRecord.GAME_START || (b & 3) == 0 || (b & 3) == 3)
+            throw corrupt("expected the start of a game");
+
+        firstPlayer = b & 3;
+        result = GameRecord.UNFINISHED;
+        ended = false;
+        board = new board();
+        board.getPosition().setSideToMove(firstPlayer);
+        return board;
+    }
+
+    /**
+     * Plays the next move of the current game on its board.
+     *
+     * @return The packed move, or {@link Move#NONE} at the end of the game
+     * @throws IOException if the file cannot be read, is malformed or holds an illegal move
+     */
+    public int nextMove () throws IOException {
+        if (ended)
+            return Move.NONE;
+
+        int b = read();
+        if (b == -1)
+            throw new EOFException("game cut off at byte " + (offset + next));
+        if ((b & GameRecord.MARKER) == GameRecord.GAME_END) {
+            result = GameRecord.resultOf(b);
+            ended = true;
+            return Move.NONE;
+        }
+
+        int move = GameRecord.decode(board.getPosition(), b);
+        if (move == Move.NONE)
+            throw corrupt("illegal move");
+        Piece piece = board.getPiece(Move.piece(move));
+        board.movePiece(piece, Position.row(Move.to(move)), Position.col(Move.to(move)));
+        board.trapped(piece);
+        return move;
+    }
+
+    /**
+     * Reads the rest of the current game, or the next game if the current one has ended.
+     *
+     * @return The game, or null at the end of the file
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public GameRecord readGame () throws IOException {
+        if (ended && nextGame() == null)
+            return null;
+
+        GameRecord game = new GameRecord(firstPlayer);
+        for (int i = 0; i < board.getPosition().historySize(); i++)
+            game.add(board.getPosition().historyMove(i));
+        int move;
+        while ((move = nextMove()) != Move.NONE)
+            game.add(move);
+        game.setResult(result);
+        return game;
+    }
+
+    /**
+     * Returns the board of the current game.
+     *
+     * @return The board, or null before the first game
+     */
+    public board getBoard () {
+        return board;
+    }
+
+    /**
+     * Returns the player who moved first in the current game.
+     *
+     * @return 1 or 2
+     */
+    public int getFirstPlayer () {
+        return firstPlayer;
+    }
+
+    /**
+     * Returns the result of the current game, known once {@link #nextMove()} has
+     * returned {@link Move#NONE}.
+     *
+     * @return The winner (1 or 2), 0 for a draw, or {@link GameRecord#UNFINISHED}
+     */
+    public int getResult () {
+        return result;
+    }
+
+    /**
+     * Builds the exception for a malformed byte.
+     *
+     * @param problem What is wrong
+     * @return The exception
+     */
+    private IOException corrupt (String problem) {
+        return new IOException(problem + " at byte " + (offset + next - 1));
+    }
+
+    /**
+     * Closes the stream.
+     *
+     * @throws IOException if the stream cannot be closed
+     */
+    @Override
+    public void close () throws IOException {
+        in.close();
+    }
+
+    /**
+     * Replays record files and prints their games in the text notation or the replay speed.
+     *
+     * @param args {@code [--text] file...}
+     * @throws IOException if a file cannot be read or is malformed
+     */
+    public static void main (String[] args) throws IOException {
+        boolean text = false;
+        long games = 0, moves = 0, start = System.nanoTime();
+
+        for (String arg : args) {
+            if (arg.equals("--text")) {
+                text = true;
+                continue;
+            }
+            try (GameRecordReader reader = new GameRecordReader(Paths.get(arg))) {
+                if (text) {
+                    GameRecord game;
+                    while ((game = reader.readGame()) != null) {
+                        System.out.println(game.toText());
+                        games++;
+                        moves += game.length();
+                    }
+                }
+                else {
+                    while (reader.nextGame() != null) {
+                        while (reader.nextMove() != Move.NONE)
+                            moves++;
+                        games++;
+                    }
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (!text)
+            System.out.printf("%d games, %d moves replayed in %.2f s (%.0f moves/s)%n", games, moves, seconds,
+                    moves / seconds);
+    }
+}
@@ -0,0 +1,229 @@
+package mpprog3.Engine;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends games to a binary record file in the format of {@link GameRecord}.
+ * <p>
+ * Games can be written move by move as they are played, with {@link #startGame(int)},
+ * {@link #writeMove(int)} and {@link #endGame(int)}, or whole with
+ * {@link #writeGame(GameRecord)}. Bytes are collected in a buffer and written in
+ * blocks, so memory use does not depend on the archive size. A writer is not thread
+ * safe; threads sharing one must write whole games under a lock.
+ *
+ * @see GameRecordReader
+ */
+public final class GameRecordWriter implements Closeable {
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The destination. */
+    private final OutputStream out;
+    /** Bytes not yet written. */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    /** Number of bytes in the buffer. */
+    private int size;
+    /** Whether a game has been started and not ended. */
+    private boolean inGame;
+
+    /** Games written. */
+    private long games;
+    /** Moves written. */
+    private long moves;
+
+    /**
+     * Opens a record file for appending, creating it with a header if it is new or empty.
+     *
+     * @param file The file
+     * @throws IOException if the file cannot be opened
+     */
+    public GameRecordWriter (Path file) throws IOException {
+        this(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                Files.size(file) == 0); // the stream is opened, and the file created, first
+    }
+
+    /**
+     * Constructs a writer on a stream.
+     *
+     * @param out The stream, closed with the writer
+     * @param header Whether to write the file header first
+     */
+    public GameRecordWriter (OutputStream out, boolean header) {
+        this.out = out;
+        if (header) {
+            put(GameRecord.MAGIC >>> 24);
+            put(GameRecord.MAGIC >>> 16);
+            put(GameRecord.MAGIC >>> 8);
+            put(GameRecord.MAGIC);
+            put(GameRecord.VERSION);
+        }
+    }
+
+    /**
+     * Starts a game from the starting layout.
+     *
+     * @param firstPlayer The player who moves first (1 or 2)
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void startGame (int firstPlayer) throws IOException {
+        if (inGame)
+            throw new IllegalStateException("the previous game has not ended");
+        if (firstPlayer != 1 && firstPlayer != 2)
+            throw new IllegalArgumentException("first player must be 1 or 2: " + firstPlayer);
+        inGame = true;
+        write(GameRecord.GAME_START | firstPlayer);
+    }
+
+    /**
+     * Appends a move of the current game.
+     *
+     * @param move The packed move
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void writeMove (int move) throws IOException {
+        if (!inGame)
+            throw new IllegalStateException("no game started");
+        write(GameRecord.encode(move));
+        moves++;
+    }
+
+    /**
+     * Ends the current game.
+     *
+     * @param result The winner (1 or 2), 0 for a draw, or {@link GameRecord#UNFINISHED}
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void endGame (int result) throws IOException {
+        if (!inGame)
+            throw new IllegalStateException("no game started");
+        write(GameRecord.endByte(result));
+        inGame = false;
+        games++;
+    }
+
+    /**
+     * Writes a whole game.
+     *
+     * @param game The game
+     * @throws IOException if the buffer cannot be flushed
+     */
+    public void writeGame (GameRecord game) throws IOException {
+        startGame(game.getFirstPlayer());
+        for (int i = 0; i < game.length(); i++)
+            writeMove(game.getMove(i));
+        endGame(game.getResult());
+    }
+
+    /**
+     * Returns the number of games written.
+     *
+     * @return The games ended with this writer
+     */
+    public long getGames () {
+        return games;
+    }
+
+    /**
+     * Returns the number of moves written.
+     *
+     * @return The moves written with this writer
+     */
+    public long getMoves () {
+        return moves;
+    }
+
+    /**
+     * Adds a byte to the buffer, writing the buffer out when it is full.
+     *
+     * @param b The byte, in the low 8 bits
+     * @throws IOException if the buffer cannot be written
+     */
+    private void write (int b) throws IOException {
+        if (size == BUFFER_SIZE)
+            flushBuffer();
+        put(b);
+    }
+
+    /**
+     * Adds a byte to a buffer known to have room.
+     *
+     * @param b The byte, in the low 8 bits
+     */
+    private void put (int b) {
+        buffer[size++] = (byte) b;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     *
+     * @throws IOException if they cannot be written
+     */
+    private void flushBuffer () throws IOException {
+        out.write(buffer, 0, size);
+        size = 0;
+    }
+
+    /**
+     * Writes the buffered bytes and flushes the stream.
+     *
+     * @throws IOException if they cannot be written
+     */
+    public void flush () throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the stream. A game still in progress is ended as unfinished.
+     *
+     * @throws IOException if the stream cannot be written or closed
+     */
+    @Override
+    public void close () throws IOException {
+        try {
+            if (inGame)
+                endGame(GameRecord.UNFINISHED);
+            flushBuffer();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Converts games in the text notation to a binary record.
+     *
+     * @param args {@code --out FILE text-file...}; games are appended to the output
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void main (String[] args) throws IOException {
+        Path output = null;
+        int first = 0;
+
+        if (args.length >= 2 && args[0].equals("--out")) {
+            output = Paths.get(args[1]);
+            first = 2;
+        }
+        if (output == null || first == args.length)
+            throw new IllegalArgumentException("usage: GameRecordWriter --out FILE text-file...");
+
+        try (GameRecordWriter writer = new GameRecordWriter(output)) {
+            for (int i = first; i < args.length; i++) {
+                try (BufferedReader in = Files.newBufferedReader(Paths.get(args[i]))) {
+                    String line;
+                    while ((line = in.readLine()) != null)
+                        if (!line.trim().isEmpty())
+                            writer.writeGame(GameRecord.parse(line));
+                }
+            }
+            System.out.printf("%d games, %d moves appended to %s%n", writer.getGames(), writer.getMoves(), output);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package mpprog3.Engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import mpprog3.Controller.board;
+
+/**
+ * Multi-threaded alpha-beta search using Lazy SMP.
+ * <p>
+ * Every thread runs a full {@link AlphaBeta} search of the same root, and all of them
+ * share one lock-free {@link TranspositionTable}. The threads do not split the tree
+ * explicitly; they speed each other up through the table:
+ * <ul>
+ *   <li>The main search (id 0) runs on the calling thread and decides the move</li>
+ *   <li>Helpers (ids 1 to N-1) start one ply deeper on odd ids and try the root moves
+ *       in a rotated order, so they reach other subtrees first</li>
+ *   <li>When the main search finishes, the helpers are signalled to stop and joined</li>
+ * </ul>
+ * With one thread this is the same as a plain {@link AlphaBeta} search.
+ *
+ * @see AlphaBeta#setHelperId(int)
+ */
+public final class LazySmp implements SearchEngine {
+    /** Budget of the benchmark searches, which stop at the depth limit instead. */
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    /** The shared cache. */
+    private final TranspositionTable table;
+    /** One search per thread; index 0 is the main search. */
+    private final AlphaBeta[] searches;
+
+    /** Nodes visited by all threads in the last search. */
+    private long nodes;
+    /** Duration of the last search in nanoseconds. */
+    private long elapsed;
+
+    /**
+     * Constructs a search using every available processor and a
+     * {@value AlphaBeta#DEFAULT_TABLE_MB} MB table.
+     */
+    public LazySmp () {
+        this(Runtime.getRuntime().availableProcessors(), AlphaBeta.DEFAULT_TABLE_MB);
+    }
+
+    /**
+     * Constructs a search with a given number of threads.
+     *
+     * @param threads The number of search threads, including the main one (at least 1)
+     * @param megabytes The size of the shared transposition table in MB
+     */
+    public LazySmp (int threads, int megabytes) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+
+        table = new TranspositionTable(megabytes);
+        searches = new AlphaBeta[threads];
+        for (int i = 0; i < threads; i++) {
+            searches[i] = new AlphaBeta(table);
+            searches[i].setHelperId(i);
+            searches[i].setStartsGeneration(false);
+        }
+    }
+
+    @Override
+    public int bestMove (Position root, long millis) {
+        return search(root, null, millis, AlphaBeta.MAX_DEPTH);
+    }
+
+    @Override
+    public int bestMove (Position root, DrawDetector history, long millis) {
+        return search(root, history, millis, AlphaBeta.MAX_DEPTH);
+    }
+
+    /**
+     * Searches a position with all threads until the main search reaches the budget or
+     * the depth limit.
+     *
+     * @param root The position to search (not modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param depthLimit The deepest iteration of the main search
+     * @return The best move of the main search, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position root, long millis, int depthLimit) {
+        return search(root, null, millis, depthLimit);
+    }
+
+    /**
+     * Searches a position reached in a game with all threads, scoring repetitions of the
+     * game's positions as draws.
+     *
+     * @param root The position to search (not modified)
+     * @param history The positions of the game up to the root, or null if unknown (not
+     *                modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param depthLimit The deepest iteration of the main search
+     * @return The best move of the main search, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position root, DrawDetector history, long millis, int depthLimit) {
+        long start = System.nanoTime();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] helpers = new Thread[searches.length - 1];
+        int best;
+
+        table.newSearch(); // before any helper stores an entry
+
+        for (int i = 0; i < helpers.length; i++) {
+            AlphaBeta helper = searches[i + 1];
+            helper.setStopSignal(stop);
+            helpers[i] = new Thread(() -> helper.search(root, history, millis, AlphaBeta.MAX_DEPTH), "lazy-smp-" + (i + 1));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+
+        try {
+            best = searches[0].search(root, history, millis, depthLimit);
+        }
+        finally {
+            stop.set(true);
+            for (Thread helper : helpers) {
+                boolean interrupted = false;
+                while (helper.isAlive()) {
+                    try {
+                        helper.join();
+                    }
+                    catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted)
+                    Thread.currentThread().interrupt();
+            }
+        }
+
+        nodes = 0;
+        for (AlphaBeta search : searches)
+            nodes += search.getNodes();
+        elapsed = System.nanoTime() - start;
+        return best;
+    }
+
+    /**
+     * Sets the endgame tablebase probed by every thread.
+     *
+     * @param tablebase The tablebase, or null for none
+     */
+    public void setTablebase (Tablebase tablebase) {
+        for (AlphaBeta search : searches)
+            search.setTablebase(tablebase);
+    }
+
+    /**
+     * Returns the number of search threads.
+     *
+     * @return The thread count, including the main one
+     */
+    public int getThreads () {
+        return searches.length;
+    }
+
+    /**
+     * Returns the depth of the last completed iteration of the main search.
+     *
+     * @return The depth in plies
+     */
+    public int getDepth () {
+        return searches[0].getDepth();
+    }
+
+    /**
+     * Returns the nodes visited by all threads in the last search.
+     *
+     * @return The node count
+     */
+    public long getNodes () {
+        return nodes;
+    }
+
+    /**
+     * Returns the score of the last completed iteration of the main search.
+     *
+     * @return The score from the searching player's point of view
+     */
+    public int getScore () {
+        return searches[0].getScore();
+    }
+
+    /**
+     * Returns the combined speed of all threads in the last search.
+     *
+     * @return Nodes per second
+     */
+    public long getNodesPerSecond () {
+        return elapsed == 0 ? 0 : nodes * 1_000_000_000L / elapsed;
+    }
+
+    @Override
+    public String report () {
+        return String.format("depth %d, score %d, %d nodes, %d nodes/s, %d threads, hash %d%%", getDepth(),
+                getScore(), nodes, getNodesPerSecond(), searches.length, table.hashfull() / 10);
+    }
+
+    @Override
+    public String name () {
+        return "Alpha-Beta (" + searches.length + " threads)";
+    }
+
+    /**
+     * Measures the time to reach a fixed depth from the starting layout with 1, 2, 4
+     * and 8 threads (or the given counts) and prints the speedup over the first count.
+     * <p>
+     * Untimed warmup searches run first so the JIT has compiled the search before any
+     * measurement. Each count is then timed several times, each run with a fresh table,
+     * and the median is reported with the fastest and slowest runs; speedups compare
+     * medians.
+     *
+     * @param args {@code [depth] [--threads 1,2,4,8] [--hash MB] [--warmup W] [--runs R]}
+     */
+    public static void main (String[] args) {
+        int depth = 9, megabytes = 64, warmup = 5, runs = 5;
+        String counts = "1,2,4,8";
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    counts = args[++i];
+                    break;
+                case "--hash":
+                    megabytes = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+        if (runs < 1)
+            throw new IllegalArgumentException("runs must be at least 1: " + runs);
+
+        Position root = new board().getPosition();
+        double baseline = 0;
+
+        for (int i = 0; i < warmup; i++)
+            new LazySmp(1, megabytes).search(root, DAY_MILLIS, depth);
+
+        System.out.printf("time to depth %d, %d processors, %d warmup searches, %d runs per count%n", depth,
+                Runtime.getRuntime().availableProcessors(), warmup, runs);
+        for (String count : counts.split(",")) {
+            double[] seconds = new double[runs];
+            LazySmp smp = null;
+            int move = Move.NONE;
+
+            for (int run = 0; run < runs; run++) {
+                smp = new LazySmp(Integer.parseInt(count.trim()), megabytes);
+                long start = System.nanoTime();
+                move = smp.search(root, DAY_MILLIS, depth);
+                seconds[run] = (System.nanoTime() - start) / 1e9;
+            }
+            java.util.Arrays.sort(seconds);
+            double median = runs % 2 == 1 ? seconds[runs / 2] : (seconds[runs / 2 - 1] + seconds[runs / 2]) / 2;
+
+            if (baseline == 0)
+                baseline = median;
+            System.out.printf("%2d threads: median %8.3f s [%.3f, %.3f], speedup %5.2f, %s, %s%n", smp.getThreads(),
+                    median, seconds[0], seconds[runs - 1], baseline / median, Move.toString(move), smp.report());
+        }
+    }
+}
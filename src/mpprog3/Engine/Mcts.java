@@ -0,0 +1,494 @@
+package mpprog3.Engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import mpprog3.Controller.board;
+
+import static mpprog3.Engine.Position.*;
+
+/**
+ * Monte Carlo Tree Search (MCTS) with UCT selection, shared by several worker threads.
+ * <p>
+ * Each playout has four steps:
+ * <ol>
+ *   <li>Selection: from the root, follow the child with the best UCT value (average
+ *       result plus an exploration bonus) until a node without children</li>
+ *   <li>Expansion: a node that was already visited once gets one child per legal move</li>
+ *   <li>Simulation: play lightly guided random moves on the worker's own
+ *       {@link Position} copy until a side wins or the playout gets too long</li>
+ *   <li>Backpropagation: add the result to every node on the path</li>
+ * </ol>
+ * Each worker also follows the path and the playout with its own {@link DrawDetector},
+ * seeded with the game played before the root when it is given, so positions drawn by
+ * a threefold repetition or the no-capture limit end the playout as a draw, worth half
+ * a win, in the tree as in the simulation.
+ * All workers search one tree (tree parallelism) without locks:
+ * <ul>
+ *   <li>Visit and value counters are updated atomically ({@link VarHandle} getAndAdd)</li>
+ *   <li>A node counts the visit on the way down, before its result is known. Until
+ *       the playout ends, that visit acts as a lost game (a virtual loss), which steers
+ *       the other workers to different paths</li>
+ *   <li>Children are published with a single compare-and-set, so a node is only
+ *       expanded once</li>
+ * </ul>
+ * The move played is the root child with the most visits.
+ *
+ * @see AlphaBeta
+ */
+public final class Mcts implements SearchEngine {
+    /** UCT exploration constant for results between 0 and 1. */
+    private static final double EXPLORATION = 1.4;
+    /** Playouts longer than this many plies are scored as draws. */
+    private static final int MAX_PLAYOUT = 200;
+    /** Tree nodes created before expansion stops, to bound the memory used. */
+    private static final int MAX_NODES = 1 << 22;
+    /** Children of a node whose position is over. */
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /** Number of worker threads, including the calling thread. */
+    private final int threads;
+    /** Seed of the random playouts; each worker derives its own generator. */
+    private final long seed;
+
+    /** Root of the last search. */
+    private Node root;
+    /** The position searched. */
+    private final Position rootPosition = new Position();
+    /** The positions of the game up to the root. */
+    private final DrawDetector rootHistory = new DrawDetector();
+    /** Nodes created by the current search. */
+    private final AtomicLong nodeCount = new AtomicLong();
+    /** Playouts started by the current search. */
+    private final AtomicLong playouts = new AtomicLong();
+    /** Duration of the last search in nanoseconds. */
+    private long elapsed;
+
+    /**
+     * Constructs a search using every available processor.
+     */
+    public Mcts () {
+        this(Runtime.getRuntime().availableProcessors(), System.nanoTime());
+    }
+
+    /**
+     * Constructs a search with a given number of threads.
+     *
+     * @param threads The number of worker threads, including the calling one (at least 1)
+     * @param seed The seed of the random playouts
+     */
+    public Mcts (int threads, long seed) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be at least 1: " + threads);
+
+        this.threads = threads;
+        this.seed = seed;
+    }
+
+    @Override
+    public int bestMove (Position root, long millis) {
+        return search(root, null, millis, Long.MAX_VALUE);
+    }
+
+    @Override
+    public int bestMove (Position root, DrawDetector history, long millis) {
+        return search(root, history, millis, Long.MAX_VALUE);
+    }
+
+    /**
+     * Runs playouts until the budget or the playout limit is reached.
+     *
+     * @param position The position to search (not modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param maxPlayouts The number of playouts after which to stop
+     * @return The most visited move, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position position, long millis, long maxPlayouts) {
+        return search(position, null, millis, maxPlayouts);
+    }
+
+    /**
+     * Runs playouts from a position reached in a game until the budget or the playout
+     * limit is reached, scoring draws by the game's history as well.
+     *
+     * @param position The position to search (not modified)
+     * @param history The positions of the game up to the root, or null if unknown (not
+     *                modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @param maxPlayouts The number of playouts after which to stop
+     * @return The most visited move, or {@link Move#NONE} if there is no legal move
+     */
+    public int search (Position position, DrawDetector history, long millis, long maxPlayouts) {
+        long start = System.nanoTime(), deadline = start + millis * 1_000_000L;
+        Thread[] helpers = new Thread[threads - 1];
+
+        if (history != null)
+            rootHistory.copyFrom(history);
+        else
+            rootHistory.reset(position.hash());
+        rootHistory.trim(); // leave room for every playout to be popped
+        Worker main = new Worker(new SplittableRandom(seed));
+
+        rootPosition.copyFrom(position);
+        nodeCount.set(1);
+        playouts.set(0);
+        root = new Node(null, Move.NONE, opponent(position.getSideToMove()));
+        main.pos.copyFrom(rootPosition);
+        main.expand(root);
+
+        for (int i = 0; i < helpers.length; i++) {
+            Worker worker = new Worker(main.random.split());
+            helpers[i] = new Thread(() -> worker.run(deadline, maxPlayouts), "mcts-" + (i + 1));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        main.run(deadline, maxPlayouts);
+
+        for (Thread helper : helpers) {
+            boolean interrupted = false;
+            while (helper.isAlive()) {
+                try {
+                    helper.join();
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        elapsed = System.nanoTime() - start;
+
+        Node best = mostVisited(root);
+        return best == null ? Move.NONE : best.move;
+    }
+
+    /**
+     * Finds the child of a node with the most visits.
+     *
+     * @param node The node
+     * @return The child, or null if the node has none
+     */
+    private static Node mostVisited (Node node) {
+        Node[] children = node.children;
+        Node best = null;
+
+        if (children == null)
+            return null;
+        for (Node child : children)
+            if (best == null || child.visits > best.visits)
+                best = child;
+        return best;
+    }
+
+    /**
+     * Returns the number of playouts of the last search.
+     *
+     * @return The playout count
+     */
+    public long getPlayouts () {
+        return playouts.get();
+    }
+
+    /**
+     * Returns the speed of the last search.
+     *
+     * @return Playouts per second
+     */
+    public long getPlayoutsPerSecond () {
+        return elapsed == 0 ? 0 : playouts.get() * 1_000_000_000L / elapsed;
+    }
+
+    /**
+     * Returns the number of visits of each root move of the last search.
+     *
+     * @param moves Receives the root moves, at least {@link MoveGenerator#MAX_MOVES} long
+     * @param visits Receives the visits of each root move
+     * @return The number of root moves
+     */
+    public int rootVisits (int[] moves, long[] visits) {
+        Node[] children = root == null ? null : root.children;
+        int n = children == null ? 0 : children.length;
+
+        for (int i = 0; i < n; i++) {
+            moves[i] = children[i].move;
+            visits[i] = children[i].visits;
+        }
+        return n;
+    }
+
+    @Override
+    public String report () {
+        Node best = root == null ? null : mostVisited(root);
+        double winRate = best == null || best.visits == 0 ? 0 : best.value / (2.0 * best.visits);
+
+        return String.format("%d playouts, %d playouts/s, %d nodes, win rate %.1f%%, %d threads", playouts.get(),
+                getPlayoutsPerSecond(), nodeCount.get(), winRate * 100, threads);
+    }
+
+    @Override
+    public String name () {
+        return "MCTS";
+    }
+
+    /**
+     * A node of the search tree: the position after {@link #move}.
+     * <p>
+     * The value counts half points for {@link #mover}: 2 per win, 1 per draw.
+     */
+    private static final class Node {
+        /** Atomic access to {@link #visits}. */
+        private static final VarHandle VISITS;
+        /** Atomic access to {@link #value}. */
+        private static final VarHandle VALUE;
+        /** Publication of {@link #children}. */
+        private static final VarHandle CHILDREN;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                VISITS = lookup.findVarHandle(Node.class, "visits", int.class);
+                VALUE = lookup.findVarHandle(Node.class, "value", long.class);
+                CHILDREN = lookup.findVarHandle(Node.class, "children", Node[].class);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        /** The parent node, or null for the root. */
+        final Node parent;
+        /** The move leading to this node. */
+        final int move;
+        /** The player who made the move (1 or 2). */
+        final int mover;
+
+        /** Playouts through this node, including unfinished ones. */
+        volatile int visits;
+        /** Half points won by {@link #mover} in finished playouts. */
+        volatile long value;
+        /** One child per legal move, {@link #NO_CHILDREN} if the game is over, or null. */
+        volatile Node[] children;
+
+        Node (Node parent, int move, int mover) {
+            this.parent = parent;
+            this.move = move;
+            this.mover = mover;
+        }
+
+        void addVisit () {
+            VISITS.getAndAdd(this, 1);
+        }
+
+        void addValue (long halfPoints) {
+            VALUE.getAndAdd(this, halfPoints);
+        }
+
+        /**
+         * Publishes the children unless another worker already did.
+         *
+         * @param created The children to publish
+         * @return The children that are in the tree
+         */
+        Node[] publish (Node[] created) {
+            return CHILDREN.compareAndSet(this, (Node[]) null, created) ? created : children;
+        }
+    }
+
+    /**
+     * One thread of the search, with its own position, move buffer and random generator.
+     */
+    private final class Worker {
+        final SplittableRandom random;
+        final Position pos = new Position();
+        final int[] moves = new int[MoveGenerator.MAX_MOVES];
+        /** The game up to the root, then the path and playout being played. */
+        final DrawDetector line = new DrawDetector(rootHistory);
+
+        Worker (SplittableRandom random) {
+            this.random = random;
+        }
+
+        /**
+         * Runs playouts until the deadline or the playout limit.
+         *
+         * @param deadline The System.nanoTime() at which to stop
+         * @param maxPlayouts The number of playouts after which to stop
+         */
+        void run (long deadline, long maxPlayouts) {
+            while (playouts.getAndIncrement() < maxPlayouts && System.nanoTime() < deadline)
+                playout();
+            playouts.getAndDecrement(); // the increment that ended the loop did not play
+        }
+
+        /**
+         * Runs one selection, expansion, simulation and backpropagation.
+         */
+        void playout () {
+            Node node = root;
+            int room = line.room(), winner = -1;
+
+            pos.copyFrom(rootPosition);
+            node.addVisit();
+            while (true) {
+                if (line.isDraw()) {
+                    winner = 0;
+                    break;
+                }
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.visits < 2) // simulate from a new leaf before expanding it
+                        break;
+                    children = expand(node);
+                    if (children == null)
+                        break;
+                }
+                if (children.length == 0)
+                    break;
+
+                if (line.room() == 0) // a path this long never happens; keep it poppable
+                    break;
+
+                node = select(node, children);
+                node.addVisit();
+                pos.makeMove(node.move);
+                line.push(pos, node.move);
+            }
+
+            if (winner < 0)
+                winner = simulate();
+            for (; node != null; node = node.parent)
+                node.addValue(winner == 0 ? 1 : winner == node.mover ? 2 : 0);
+            while (line.room() < room)
+                line.pop();
+        }
+
+        /**
+         * Creates the children of a node from the worker's position.
+         *
+         * @param node The node, whose position is the worker's position
+         * @return The children in the tree, or null if the node limit is reached
+         */
+        Node[] expand (Node node) {
+            int player = pos.getSideToMove();
+            int n = pos.winner() != 0 ? 0 : MoveGenerator.generate(pos, player, moves);
+
+            if (n > 0 && nodeCount.addAndGet(n) > MAX_NODES) {
+                nodeCount.addAndGet(-n);
+                return null;
+            }
+
+            Node[] created = n == 0 ? NO_CHILDREN : new Node[n];
+            for (int i = 0; i < n; i++)
+                created[i] = new Node(node, moves[i], player);
+            return node.publish(created);
+        }
+
+        /**
+         * Picks the child with the best UCT value; unvisited children come first.
+         *
+         * @param parent The node
+         * @param children Its children
+         * @return The chosen child
+         */
+        Node select (Node parent, Node[] children) {
+            double logVisits = Math.log(Math.max(1, parent.visits));
+            double bestValue = Double.NEGATIVE_INFINITY;
+            Node best = children[0];
+
+            for (Node child : children) {
+                int visits = child.visits;
+                if (visits == 0)
+                    return child;
+
+                double uct = child.value / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (uct > bestValue) {
+                    bestValue = uct;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays the game on from the worker's position.
+         *
+         * @return The winner (1 or 2), or 0 for a draw or if the playout was cut off
+         */
+        int simulate () {
+            for (int ply = 0; ply < MAX_PLAYOUT && line.room() > 0; ply++) {
+                int winner = pos.winner();
+                if (winner != 0)
+                    return winner;
+                if (line.isDraw())
+                    return 0;
+
+                int player = pos.getSideToMove();
+                int n = MoveGenerator.generate(pos, player, moves);
+                if (n == 0) // no legal move loses
+                    return opponent(player);
+                int move = choose(n);
+                pos.makeMove(move);
+                line.push(pos, move);
+            }
+            return 0;
+        }
+
+        /**
+         * Chooses a playout move: entering the den if possible, otherwise a capture half
+         * of the time, otherwise any move.
+         *
+         * @param n The number of moves in the buffer
+         * @return The move
+         */
+        int choose (int n) {
+            int captures = 0;
+
+            for (int i = 0; i < n; i++) {
+                int move = moves[i], to = Move.to(move);
+                if (to == DEN_1 || to == DEN_2)
+                    return move;
+                if (Move.isCapture(move)) { // gather the captures at the front
+                    moves[i] = moves[captures];
+                    moves[captures++] = move;
+                }
+            }
+            if (captures > 0 && random.nextBoolean())
+                return moves[random.nextInt(captures)];
+            return moves[random.nextInt(n)];
+        }
+    }
+
+    /**
+     * Searches the starting layout and prints the visits of each root move.
+     *
+     * @param args {@code [millis] [--threads N] [--seed S]}
+     */
+    public static void main (String[] args) {
+        long millis = 3000, seed = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    millis = Long.parseLong(args[i]);
+            }
+        }
+
+        Mcts mcts = new Mcts(threads, seed);
+        int move = mcts.bestMove(new board().getPosition(), millis);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        long[] visits = new long[MoveGenerator.MAX_MOVES];
+
+        for (int i = 0, n = mcts.rootVisits(moves, visits); i < n; i++)
+            System.out.println(Move.toString(moves[i]) + ": " + visits[i]);
+        System.out.println("best " + Move.toString(move) + ", " + mcts.report());
+    }
+}
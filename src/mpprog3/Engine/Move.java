@@ -0,0 +1,141 @@
+package mpprog3.Engine;
+
+/**
+ * Packs a Jungle King move into a single {@code int} so move lists are plain arrays.
+ * <p>
+ * Bit layout:
+ * <ul>
+ *   <li>bits 0-5: origin square (0-62)</li>
+ *   <li>bits 6-11: destination square (0-62); for lake jumps this is the landing square</li>
+ *   <li>bits 12-15: piece index of the moving piece</li>
+ *   <li>bits 16-20: piece index of the captured piece plus one (0 = no capture)</li>
+ *   <li>bit 21: set for tiger/lion lake jumps</li>
+ * </ul>
+ * A packed move is never 0, so {@link #NONE} can mark "no move".
+ *
+ * @see MoveGenerator
+ */
+public final class Move {
+    /** Marker for "no move"; no legal move packs to this value. */
+    public static final int NONE = 0;
+
+    /** Set on every packed move so that no move equals {@link #NONE}. */
+    private static final int VALID = 1 << 22;
+    /** Lake jump flag. */
+    private static final int JUMP = 1 << 21;
+
+    /** Piece letters by type, rat to elephant; player 2 uses lower case. */
+    private static final char[] LETTERS = {'R', 'C', 'D', 'W', 'P', 'T', 'L', 'E'};
+
+    private Move () {
+    }
+
+    /**
+     * Packs a move.
+     *
+     * @param from The origin square
+     * @param to The destination square
+     * @param piece The moving piece index
+     * @param captured The captured piece index, or {@link Position#EMPTY}
+     * @param jump true for a lake jump
+     * @return The packed move
+     */
+    public static int make (int from, int to, int piece, int captured, boolean jump) {
+        return VALID | from | to << 6 | piece << 12 | (captured + 1) << 16 | (jump ? JUMP : 0);
+    }
+
+    /**
+     * Returns the origin square of a move.
+     *
+     * @param move The packed move
+     * @return The origin square
+     */
+    public static int from (int move) {
+        return move & 63;
+    }
+
+    /**
+     * Returns the destination square of a move.
+     *
+     * @param move The packed move
+     * @return The destination (or landing) square
+     */
+    public static int to (int move) {
+        return move >>> 6 & 63;
+    }
+
+    /**
+     * Returns the moving piece of a move.
+     *
+     * @param move The packed move
+     * @return The piece index
+     */
+    public static int piece (int move) {
+        return move >>> 12 & 15;
+    }
+
+    /**
+     * Returns the piece captured by a move.
+     *
+     * @param move The packed move
+     * @return The captured piece index, or {@link Position#EMPTY}
+     */
+    public static int captured (int move) {
+        return (move >>> 16 & 31) - 1;
+    }
+
+    /**
+     * Checks if a move captures a piece.
+     *
+     * @param move The packed move
+     * @return true for captures
+     */
+    public static boolean isCapture (int move) {
+        return (move & 31 << 16) != 0;
+    }
+
+    /**
+     * Checks if a move is a lake jump.
+     *
+     * @param move The packed move
+     * @return true for tiger/lion lake jumps
+     */
+    public static boolean isJump (int move) {
+        return (move & JUMP) != 0;
+    }
+
+    /**
+     * Returns the letter of a piece: R, C, D, W, P (leopard), T, L, E, upper case for
+     * player 1 and lower case for player 2.
+     *
+     * @param piece The piece index
+     * @return The piece letter
+     */
+    public static char letter (int piece) {
+        char ch = LETTERS[Position.typeOf(piece)];
+        return Position.playerOf(piece) == 1 ? ch : Character.toLowerCase(ch);
+    }
+
+    /**
+     * Formats a square as a column letter (a-i) followed by a row number (1-7),
+     * so row 0 column 0 is "a1".
+     *
+     * @param sq The square
+     * @return The square name
+     */
+    public static String squareName (int sq) {
+        return "" + (char) ('a' + Position.col(sq)) + (Position.row(sq) + 1);
+    }
+
+    /**
+     * Formats a move for humans, e.g. "Rc7-c6" or "Tc2xg2".
+     *
+     * @param move The packed move
+     * @return The move text
+     */
+    public static String toString (int move) {
+        if (move == NONE)
+            return "none";
+        return letter(piece(move)) + squareName(from(move)) + (isCapture(move) ? "x" : "-") + squareName(to(move));
+    }
+}
@@ -0,0 +1,195 @@
+package mpprog3.Engine;
+
+import static mpprog3.Engine.Position.*;
+
+/**
+ * Generates legal Jungle King moves straight from a {@link Position}.
+ * <p>
+ * The generator writes packed {@link Move}s into a caller-supplied array and allocates
+ * nothing, so it can sit in the inner loop of searches and simulations.
+ * The rules follow {@link mpprog3.Controller.board} and the capture methods of the
+ * piece classes:
+ * <ul>
+ *   <li>Pieces step one square orthogonally and may not enter their own den</li>
+ *   <li>Only the rat may enter the lake</li>
+ *   <li>Tigers and lions jump straight across a lake unless a piece is in the way</li>
+ *   <li>A piece weakened by a trap can be captured by anything</li>
+ *   <li>The elephant cannot capture the rat; the rat can only capture the rat</li>
+ *   <li>A rat in the lake cannot be captured from land</li>
+ * </ul>
+ *
+ * @see Move
+ */
+public final class MoveGenerator {
+    /** Upper bound on the number of legal moves of one player (8 pieces x 4 directions). */
+    public static final int MAX_MOVES = 32;
+
+    /** Direction constants: up (W), down (S), left (A), right (D). */
+    public static final int UP = 0, DOWN = 1, LEFT = 2, RIGHT = 3;
+
+    /** Row offsets per direction. */
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    /** Column offsets per direction. */
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    /** Neighbouring square by {@code from * 4 + dir}, or -1 off the board. */
+    private static final int[] NEIGHBOR = new int[SQUARES * 4];
+    /** Far-shore landing square of a lake jump by {@code from * 4 + dir}, or -1 if the neighbour is not lake. */
+    private static final int[] JUMP_LANDING = new int[SQUARES * 4];
+    /** Lake squares crossed by a jump by {@code from * 4 + dir}; any piece on them blocks it. */
+    private static final long[] JUMP_PATH = new long[SQUARES * 4];
+
+    static {
+        for (int from = 0; from < SQUARES; from++) {
+            for (int dir = 0; dir < 4; dir++) {
+                int i = from * 4 + dir, r = row(from) + ROW_STEP[dir], c = col(from) + COL_STEP[dir];
+                long path = 0;
+
+                NEIGHBOR[i] = JUMP_LANDING[i] = -1;
+                if (r < 0 || r >= ROWS || c < 0 || c >= COLS)
+                    continue;
+                NEIGHBOR[i] = square(r, c);
+
+                while (isLake(square(r, c))) { // lakes never touch the board edge
+                    path |= 1L << square(r, c);
+                    r += ROW_STEP[dir];
+                    c += COL_STEP[dir];
+                }
+                if (path != 0) {
+                    JUMP_LANDING[i] = square(r, c);
+                    JUMP_PATH[i] = path;
+                }
+            }
+        }
+    }
+
+    private MoveGenerator () {
+    }
+
+    /**
+     * Fills an array with every legal move of a player.
+     *
+     * @param pos The position
+     * @param player The player (1 or 2)
+     * @param moves The output array, at least {@link #MAX_MOVES} long
+     * @return The number of moves written
+     */
+    public static int generate (Position pos, int player, int[] moves) {
+        int n = 0, from, dir, move;
+        long own = pos.occupied(player);
+
+        while (own != 0) {
+            from = Long.numberOfTrailingZeros(own);
+            own &= own - 1;
+            for (dir = 0; dir < 4; dir++) {
+                move = stepMove(pos, from, dir);
+                if (move != Move.NONE)
+                    moves[n++] = move;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Returns the legal move of the piece on a square in one direction, if any.
+     * <p>
+     * Tigers and lions stepping into a lake jump to the far shore; the returned move
+     * then has the landing square as its destination. Neighbours, landing squares and
+     * the crossed lake squares come from tables built once, so no move loops over the
+     * lake.
+     *
+     * @param pos The position
+     * @param from The square of the moving piece
+     * @param dir {@link #UP}, {@link #DOWN}, {@link #LEFT} or {@link #RIGHT}
+     * @return The packed move, or {@link Move#NONE} if illegal
+     */
+    public static int stepMove (Position pos, int from, int dir) {
+        int piece = pos.pieceAt(from);
+        if (piece == EMPTY)
+            return Move.NONE;
+
+        int player = playerOf(piece), type = typeOf(piece), i = from * 4 + dir;
+        int to = NEIGHBOR[i];
+        if (to < 0 || to == den(player)) // off the board, or the own den
+            return Move.NONE;
+
+        boolean jump = false;
+        if (isLake(to) && type != RAT) {
+            if ((type != TIGER && type != LION) || (pos.occupied() & JUMP_PATH[i]) != 0) // a rat blocks the jump
+                return Move.NONE;
+            to = JUMP_LANDING[i];
+            jump = true;
+        }
+
+        int target = pos.pieceAt(to);
+        if (target == EMPTY)
+            return Move.make(from, to, piece, EMPTY, jump);
+        if (playerOf(target) == player || !canCapture(pos, piece, target, to))
+            return Move.NONE;
+        return Move.make(from, to, piece, target, jump);
+    }
+
+    /**
+     * Returns the landing square of a lake jump.
+     *
+     * @param from The square the jump starts from
+     * @param dir The direction
+     * @return The square on the far shore, or -1 if the next square is not lake
+     */
+    public static int jumpLanding (int from, int dir) {
+        return JUMP_LANDING[from * 4 + dir];
+    }
+
+    /**
+     * Returns the lake squares crossed by a jump; the jump is legal only if none is occupied.
+     *
+     * @param from The square the jump starts from
+     * @param dir The direction
+     * @return The mask of crossed squares, 0 if the next square is not lake
+     */
+    public static long jumpPath (int from, int dir) {
+        return JUMP_PATH[from * 4 + dir];
+    }
+
+    /**
+     * Decides whether a piece may capture an enemy piece standing on a square.
+     * <p>
+     * Mirrors {@link mpprog3.Model.Piece#capture}, {@link mpprog3.Model.rat} and
+     * {@link mpprog3.Model.elephant}: a weakened defender always falls, the elephant
+     * cannot take the rat, the rat only takes the rat, a rat in the lake is safe from
+     * land animals, and otherwise the attacker needs equal or greater strength.
+     * The answer is one lookup in the {@link CaptureTable}.
+     *
+     * @param pos The position
+     * @param attacker The attacking piece index
+     * @param defender The defending piece index
+     * @param to The defender's square
+     * @return true if the capture is allowed
+     */
+    public static boolean canCapture (Position pos, int attacker, int defender, int to) {
+        return CaptureTable.canCapture(typeOf(attacker), typeOf(defender), isLake(pos.squareOf(attacker)), isLake(to),
+                pos.isWeak(to));
+    }
+
+    /**
+     * Returns the direction from one square to another when they lie on the same row
+     * or column.
+     *
+     * @param from The origin square
+     * @param to The destination square
+     * @return The direction, or -1 if the squares are not in line
+     */
+    public static int direction (int from, int to) {
+        int dr = row(to) - row(from), dc = col(to) - col(from);
+
+        if (dc == 0 && dr < 0)
+            return UP;
+        if (dc == 0 && dr > 0)
+            return DOWN;
+        if (dr == 0 && dc < 0)
+            return LEFT;
+        if (dr == 0 && dc > 0)
+            return RIGHT;
+        return -1;
+    }
+}
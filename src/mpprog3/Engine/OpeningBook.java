@@ -0,0 +1,208 @@
+package mpprog3.Engine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only opening book written by {@link OpeningBookBuilder}.
+ * <p>
+ * The file is a {@value #HEADER_BYTES}-byte header followed by fixed-size entries sorted by
+ * position key (signed order) and then by move, so it is searched in place through a
+ * memory-mapped buffer without any parsing. Each {@value #ENTRY_BYTES}-byte entry holds:
+ * <ul>
+ *   <li>The {@link Position#hash()} of the position before the move (8 bytes)</li>
+ *   <li>The packed {@link Move} (4 bytes)</li>
+ *   <li>The number of games that played it, capped at 65535 (2 bytes)</li>
+ *   <li>The mover's score in those games, in thousandths (2 bytes)</li>
+ * </ul>
+ *
+ * @see BookEngine
+ */
+public final class OpeningBook {
+    /** File opened by {@link #openDefault()}. */
+    public static final String DEFAULT_FILE = "openings.jkb";
+    /** File magic, "JKBK". */
+    static final int MAGIC = 0x4A4B424B;
+    /** File format version. */
+    static final int VERSION = 1;
+    /** Header size: magic, version and entry count. */
+    static final int HEADER_BYTES = 16;
+    /** Size of one entry. */
+    static final int ENTRY_BYTES = 16;
+
+    /** The shared default book, or null. */
+    private static OpeningBook defaultBook;
+    /** Whether {@link #openDefault()} has already run. */
+    private static boolean defaultOpened;
+
+    /** The mapped file. */
+    private final MappedByteBuffer map;
+    /** Number of entries. */
+    private final int size;
+    /** Fewest games for a move to be played from the book. */
+    private int minGames = 2;
+
+    /**
+     * Maps a book file.
+     *
+     * @param file The file
+     * @throws IOException if the file cannot be read or is not a book
+     */
+    public OpeningBook (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.BIG_ENDIAN);
+        }
+        if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.getInt(4) != VERSION)
+            throw new IOException(file + ": not an opening book");
+
+        long entries = map.getLong(8);
+        if (entries < 0 || HEADER_BYTES + entries * ENTRY_BYTES != map.capacity())
+            throw new IOException(file + ": wrong size for " + entries + " entries");
+        size = (int) entries;
+    }
+
+    /**
+     * Opens {@value #DEFAULT_FILE} once and shares it.
+     *
+     * @return The book, or null if the file does not exist or cannot be read
+     */
+    public static synchronized OpeningBook openDefault () {
+        if (!defaultOpened) {
+            defaultOpened = true;
+            Path file = Paths.get(DEFAULT_FILE);
+            try {
+                if (Files.isRegularFile(file))
+                    defaultBook = new OpeningBook(file);
+            }
+            catch (IOException e) {
+                System.err.println("Opening book not loaded: " + e.getMessage());
+            }
+        }
+        return defaultBook;
+    }
+
+    /**
+     * Chooses a book move: the best scoring legal move with at least
+     * {@link #setMinGames(int) the minimum} number of games, more games breaking ties.
+     *
+     * @param pos The position
+     * @return The packed move, or {@link Move#NONE} if the book has no move here
+     */
+    public int probe (Position pos) {
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int n = MoveGenerator.generate(pos, pos.getSideToMove(), legal);
+        int best = Move.NONE, bestScore = -1, bestGames = 0;
+
+        for (int i = first(pos.hash()); i < size && key(i) == pos.hash(); i++) {
+            int move = move(i), games = games(i), score = score(i);
+
+            if (games < minGames || !contains(legal, n, move)) // a key collision can give a foreign move
+                continue;
+            if (score > bestScore || (score == bestScore && games > bestGames)) {
+                best = move;
+                bestScore = score;
+                bestGames = games;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the first entry of a position by binary search.
+     *
+     * @param key The position key
+     * @return The index of the first entry with this key, or of the first larger key
+     */
+    public int first (long key) {
+        int low = 0, high = size;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(mid) < key)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Returns the position key of an entry.
+     *
+     * @param i The entry index
+     * @return The key
+     */
+    public long key (int i) {
+        return map.getLong(HEADER_BYTES + i * ENTRY_BYTES);
+    }
+
+    /**
+     * Returns the move of an entry.
+     *
+     * @param i The entry index
+     * @return The packed move
+     */
+    public int move (int i) {
+        return map.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8);
+    }
+
+    /**
+     * Returns the game count of an entry.
+     *
+     * @param i The entry index
+     * @return The games, up to 65535
+     */
+    public int games (int i) {
+        return map.getChar(HEADER_BYTES + i * ENTRY_BYTES + 12);
+    }
+
+    /**
+     * Returns the score of an entry.
+     *
+     * @param i The entry index
+     * @return The mover's score in thousandths
+     */
+    public int score (int i) {
+        return map.getChar(HEADER_BYTES + i * ENTRY_BYTES + 14);
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return The entry count
+     */
+    public int size () {
+        return size;
+    }
+
+    /**
+     * Sets the fewest games a move needs to be played from the book.
+     *
+     * @param minGames The game count
+     */
+    public void setMinGames (int minGames) {
+        this.minGames = minGames;
+    }
+
+    /**
+     * Checks if a move is in a list.
+     *
+     * @param list The moves
+     * @param n The number of moves
+     * @param move The move
+     * @return true if found
+     */
+    private static boolean contains (int[] list, int n, int move) {
+        for (int i = 0; i < n; i++)
+            if (list[i] == move)
+                return true;
+        return false;
+    }
+}
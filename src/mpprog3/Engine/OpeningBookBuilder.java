@@ -0,0 +1,282 @@
+package mpprog3.Engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import mpprog3.Controller.board;
+
+/**
+ * Builds an {@link OpeningBook} from self-play and recorded games.
+ * <p>
+ * Every move of the first plies of each game is counted under the key of the position
+ * it was played from, together with the result for the player who made it. The
+ * totals are written sorted by key, ready to be mapped and binary searched.
+ * <p>
+ * Self-play games start with a few random moves, so they spread over many openings.
+ * After that, both sides play a fixed-depth {@link AlphaBeta} search. Recorded games
+ * are text files with one game per line: the moves as printed by
+ * {@link Move#toString(int)}, followed by {@code 1-0}, {@code 0-1} or {@code 1/2-1/2}.
+ */
+public final class OpeningBookBuilder {
+    /** Games longer than this many plies are scored as draws. */
+    private static final int MAX_GAME_PLIES = 300;
+    /** Budget of the self-play searches, which stop at the depth limit instead. */
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    /** Plies of each game counted in the book. */
+    private final int bookPlies;
+    /** Game and half-point totals per position key and move. */
+    private final Map<Long, Map<Integer, long[]>> stats = new HashMap<>();
+    /** Number of games added. */
+    private int games;
+
+    /**
+     * Constructs an empty builder.
+     *
+     * @param bookPlies Plies of each game counted in the book
+     */
+    public OpeningBookBuilder (int bookPlies) {
+        this.bookPlies = bookPlies;
+    }
+
+    /**
+     * Adds one game played from the starting layout.
+     *
+     * @param moves The packed moves
+     * @param n The number of moves
+     * @param winner The winner (1 or 2), or 0 for a draw
+     */
+    public void addGame (int[] moves, int n, int winner) {
+        Position pos = new board().getPosition();
+
+        for (int i = 0; i < n && i < bookPlies; i++) {
+            int mover = pos.getSideToMove();
+            long[] total = stats.computeIfAbsent(pos.hash(), k -> new HashMap<>())
+                                .computeIfAbsent(moves[i], k -> new long[2]);
+            total[0]++;
+            total[1] += winner == 0 ? 1 : winner == mover ? 2 : 0;
+            pos.makeMove(moves[i]);
+        }
+        games++;
+    }
+
+    /**
+     * Adds the games of a text file.
+     *
+     * @param file The file, one game per line
+     * @return The number of games added
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a line holds an illegal move or no result
+     */
+    public int addGames (Path file) throws IOException {
+        int added = 0, lineNumber = 0;
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        String line;
+
+        try (BufferedReader in = Files.newBufferedReader(file)) {
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.trim().split("\\s+");
+                lineNumber++;
+                if (tokens.length == 0 || tokens[0].isEmpty())
+                    continue;
+
+                Position pos = new board().getPosition();
+                int[] moves = new int[tokens.length - 1];
+                for (int i = 0; i < moves.length; i++) {
+                    int n = MoveGenerator.generate(pos, pos.getSideToMove(), legal);
+                    for (int j = 0; j < n && moves[i] == Move.NONE; j++)
+                        if (Move.toString(legal[j]).equals(tokens[i]))
+                            moves[i] = legal[j];
+                    if (moves[i] == Move.NONE)
+                        throw new IllegalArgumentException(file + ":" + lineNumber + ": illegal move " + tokens[i]);
+                    pos.makeMove(moves[i]);
+                }
+                addGame(moves, moves.length, parseResult(tokens[tokens.length - 1], file, lineNumber));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Parses a game result.
+     *
+     * @param result {@code 1-0}, {@code 0-1} or {@code 1/2-1/2}
+     * @param file The file, for the error message
+     * @param line The line number, for the error message
+     * @return The winner, or 0 for a draw
+     */
+    private static int parseResult (String result, Path file, int line) {
+        switch (result) {
+            case "1-0":
+                return 1;
+            case "0-1":
+                return 2;
+            case "1/2-1/2":
+                return 0;
+            default:
+                throw new IllegalArgumentException(file + ":" + line + ": missing result, found " + result);
+        }
+    }
+
+    /**
+     * Plays one self-play game.
+     *
+     * @param seed The seed of the random opening moves
+     * @param randomPlies The number of random moves at the start
+     * @param depth The search depth of the other moves
+     * @param moves Receives the moves, at least {@value #MAX_GAME_PLIES} long
+     * @return The winner (1 or 2) or 0 for a draw, in bits 0-1, and the move count above them
+     */
+    static int playGame (long seed, int randomPlies, int depth, int[] moves) {
+        SplittableRandom random = new SplittableRandom(seed);
+        AlphaBeta search = new AlphaBeta(new TranspositionTable(4));
+        Position pos = new board().getPosition();
+        int[] legal = new int[MoveGenerator.MAX_MOVES];
+        int n;
+
+        for (n = 0; n < MAX_GAME_PLIES && pos.winner() == 0; n++) {
+            int count = MoveGenerator.generate(pos, pos.getSideToMove(), legal);
+            if (count == 0) // no legal move loses
+                return Position.opponent(pos.getSideToMove()) | n << 2;
+
+            moves[n] = n < randomPlies ? legal[random.nextInt(count)] : search.search(pos, DAY_MILLIS, depth);
+            pos.makeMove(moves[n]);
+        }
+        return pos.winner() | n << 2;
+    }
+
+    /**
+     * Writes the book.
+     *
+     * @param file The output file
+     * @return The number of entries written
+     * @throws IOException if the file cannot be written
+     */
+    public int write (Path file) throws IOException {
+        TreeMap<Long, Map<Integer, long[]>> sorted = new TreeMap<>(stats);
+        int entries = 0;
+
+        for (Map<Integer, long[]> moves : sorted.values())
+            entries += moves.size();
+
+        ByteBuffer buffer = ByteBuffer.allocate(OpeningBook.HEADER_BYTES + entries * OpeningBook.ENTRY_BYTES);
+        buffer.putInt(OpeningBook.MAGIC).putInt(OpeningBook.VERSION).putLong(entries);
+        for (Map.Entry<Long, Map<Integer, long[]>> position : sorted.entrySet()) {
+            for (Map.Entry<Integer, long[]> move : new TreeMap<>(position.getValue()).entrySet()) {
+                long[] total = move.getValue();
+                buffer.putLong(position.getKey()).putInt(move.getKey())
+                      .putChar((char) Math.min(total[0], 65535))
+                      .putChar((char) (total[1] * 500 / total[0]));
+            }
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the number of games added.
+     *
+     * @return The game count
+     */
+    public int getGames () {
+        return games;
+    }
+
+    /**
+     * Plays self-play games in parallel, adds recorded games and writes the book.
+     *
+     * @param args {@code [--out FILE] [--games N] [--depth D] [--random P] [--plies P]
+     *             [--threads T] [--seed S] [recorded-games-file...]}
+     * @throws IOException if a file cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game fails
+     */
+    public static void main (String[] args) throws IOException, InterruptedException, ExecutionException {
+        Path out = Paths.get(OpeningBook.DEFAULT_FILE);
+        int count = 200, depth = 4, randomPlies = 4, plies = 12;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        List<Path> recorded = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--games":
+                    count = Integer.parseInt(args[++i]);
+                    break;
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--random":
+                    randomPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    recorded.add(Paths.get(args[i]));
+            }
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<int[]>> results = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try {
+            for (int g = 0; g < count; g++) {
+                long gameSeed = seed + g;
+                int random = randomPlies, searchDepth = depth;
+                results.add(pool.submit(() -> {
+                    int[] moves = new int[MAX_GAME_PLIES + 1];
+                    moves[MAX_GAME_PLIES] = playGame(gameSeed, random, searchDepth, moves);
+                    return moves;
+                }));
+            }
+            for (Future<int[]> result : results) {
+                int[] moves = result.get();
+                int outcome = moves[MAX_GAME_PLIES];
+                builder.addGame(moves, outcome >>> 2, outcome & 3);
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+        for (Path file : recorded)
+            builder.addGames(file);
+
+        int entries = builder.write(out);
+        System.out.printf("%d games, %d entries written to %s in %.1f s%n", builder.getGames(), entries, out,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
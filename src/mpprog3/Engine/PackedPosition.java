@@ -0,0 +1,380 @@
+package mpprog3.Engine;
+
+import java.nio.LongBuffer;
+import java.util.HashSet;
+import java.util.Set;
+import mpprog3.Controller.board;
+
+/**
+ * An immutable position packed into two {@code long}s, for storing large sets of
+ * positions and using them as hash map keys.
+ * <p>
+ * Every piece has a 6-bit field holding its square (0-62), or {@link #CAPTURED}.
+ * Bits are numbered across both words, bit 0 being the lowest bit of the low word:
+ * <ul>
+ *   <li>bits 0-59: the squares of pieces 0-9 (player 1 and the rat and cat of player 2),
+ *       piece {@code i} at bit {@code 6 * i}</li>
+ *   <li>bits 60-63: unused, always 0</li>
+ *   <li>bits 64-99: the squares of pieces 10-15</li>
+ *   <li>bits 100-115: one weakness bit per piece index</li>
+ *   <li>bit 116: the side to move, set for player 2</li>
+ * </ul>
+ * The move history is not kept. A packed position takes 16 bytes in a
+ * {@link LongBuffer} and 32 bytes as an object, against several hundred for a
+ * {@link board} and its pieces.
+ *
+ * @see Position
+ */
+public final class PackedPosition {
+    /** Square field of a captured piece. */
+    public static final int CAPTURED = 63;
+    /** Number of longs per packed position. */
+    public static final int LONGS = 2;
+
+    /** Width of a square field. */
+    private static final int SQUARE_BITS = 6;
+    /** Mask of a square field. */
+    private static final long SQUARE_MASK = (1L << SQUARE_BITS) - 1;
+    /** Number of pieces whose squares are in the low word. */
+    private static final int LOW_PIECES = 10;
+    /** First bit of the weakness bits in the high word. */
+    private static final int WEAK_SHIFT = (Position.PIECES - LOW_PIECES) * SQUARE_BITS;
+    /** Bit of the side to move in the high word. */
+    private static final int SIDE_SHIFT = WEAK_SHIFT + Position.PIECES;
+    /** Bits of the low word that are always 0. */
+    private static final long LOW_UNUSED = -1L << LOW_PIECES * SQUARE_BITS;
+    /** Bits of the high word that are always 0. */
+    private static final long HIGH_UNUSED = -1L << SIDE_SHIFT + 1;
+
+    /** Position a board is unpacked into before the board is changed. */
+    private static final ThreadLocal<Position> SCRATCH = ThreadLocal.withInitial(Position::new);
+
+    /** Bits 0-63. */
+    private final long low;
+    /** Bits 64-127. */
+    private final long high;
+
+    /**
+     * Constructs a packed position from its two words.
+     *
+     * @param low Bits 0-63
+     * @param high Bits 64-127
+     */
+    public PackedPosition (long low, long high) {
+        this.low = low;
+        this.high = high;
+    }
+
+    /**
+     * Packs a position.
+     *
+     * @param pos The position
+     * @return The packed position
+     */
+    public static PackedPosition of (Position pos) {
+        long low = 0, high = 0;
+
+        for (int piece = 0; piece < Position.PIECES; piece++) {
+            int sq = pos.squareOf(piece);
+            long field = sq < Position.SQUARES ? sq : CAPTURED;
+
+            if (piece < LOW_PIECES)
+                low |= field << piece * SQUARE_BITS;
+            else
+                high |= field << (piece - LOW_PIECES) * SQUARE_BITS;
+            if (sq < Position.SQUARES && pos.isWeak(sq))
+                high |= 1L << WEAK_SHIFT + piece;
+        }
+        if (pos.getSideToMove() == 2)
+            high |= 1L << SIDE_SHIFT;
+        return new PackedPosition(low, high);
+    }
+
+    /**
+     * Packs the position of a board.
+     *
+     * @param b The board
+     * @return The packed position
+     */
+    public static PackedPosition of (board b) {
+        return of(b.getPosition());
+    }
+
+    /**
+     * Returns the low word.
+     *
+     * @return Bits 0-63
+     */
+    public long getLow () {
+        return low;
+    }
+
+    /**
+     * Returns the high word.
+     *
+     * @return Bits 64-127
+     */
+    public long getHigh () {
+        return high;
+    }
+
+    /**
+     * Returns the square of a piece.
+     *
+     * @param piece The piece index (0-15)
+     * @return The square (0-62), or {@link #CAPTURED}
+     */
+    public int squareOf (int piece) {
+        if (piece < LOW_PIECES)
+            return (int) (low >>> piece * SQUARE_BITS & SQUARE_MASK);
+        return (int) (high >>> (piece - LOW_PIECES) * SQUARE_BITS & SQUARE_MASK);
+    }
+
+    /**
+     * Tells whether a piece is weakened by an enemy trap.
+     *
+     * @param piece The piece index (0-15)
+     * @return true if the piece is weak
+     */
+    public boolean isWeak (int piece) {
+        return (high >>> WEAK_SHIFT + piece & 1L) != 0;
+    }
+
+    /**
+     * Returns the player to move.
+     *
+     * @return 1 or 2
+     */
+    public int getSideToMove () {
+        return (int) (high >>> SIDE_SHIFT & 1L) + 1;
+    }
+
+    /**
+     * Unpacks into a position, without allocating. The undo stack of the position is
+     * emptied.
+     *
+     * @param pos The position to overwrite; left in an unspecified state if the packed
+     *            position is not valid
+     * @throws IllegalArgumentException if an unused bit is set, a captured piece is marked
+     *         weak or two pieces share a square
+     */
+    public void unpack (Position pos) {
+        if ((low & LOW_UNUSED) != 0 || (high & HIGH_UNUSED) != 0)
+            throw new IllegalArgumentException("unused bits set in " + this);
+        pos.clear();
+        for (int piece = 0; piece < Position.PIECES; piece++) {
+            int sq = squareOf(piece);
+
+            if (sq == CAPTURED) {
+                if (isWeak(piece))
+                    throw new IllegalArgumentException("captured piece " + piece + " is marked weak in " + this);
+                continue;
+            }
+            if (!pos.isEmpty(sq))
+                throw new IllegalArgumentException("pieces " + pos.pieceAt(sq) + " and " + piece + " share square " + sq);
+            pos.put(piece, sq);
+            if (isWeak(piece))
+                pos.setWeak(sq, true);
+        }
+        pos.setSideToMove(getSideToMove());
+    }
+
+    /**
+     * Unpacks into a new position.
+     *
+     * @return The position
+     */
+    public Position toPosition () {
+        Position pos = new Position();
+        unpack(pos);
+        return pos;
+    }
+
+    /**
+     * Unpacks into a board, updating all its piece objects. The packed position is
+     * checked in a scratch position kept per thread, so nothing is allocated.
+     *
+     * @param b The board to overwrite; unchanged if the packed position is not valid
+     * @throws IllegalArgumentException as {@link #unpack(Position)}
+     */
+    public void unpack (board b) {
+        Position pos = SCRATCH.get();
+        unpack(pos);
+        b.setPosition(pos);
+    }
+
+    /**
+     * Unpacks into a new board.
+     *
+     * @return The board
+     */
+    public board toBoard () {
+        board b = new board();
+        unpack(b);
+        return b;
+    }
+
+    /**
+     * Writes the two words at the buffer's position, advancing it.
+     *
+     * @param buffer The buffer, with at least {@link #LONGS} longs remaining
+     */
+    public void write (LongBuffer buffer) {
+        buffer.put(low).put(high);
+    }
+
+    /**
+     * Reads a packed position at the buffer's position, advancing it.
+     *
+     * @param buffer The buffer, with at least {@link #LONGS} longs remaining
+     * @return The packed position
+     */
+    public static PackedPosition read (LongBuffer buffer) {
+        long low = buffer.get();
+        return new PackedPosition(low, buffer.get());
+    }
+
+    /**
+     * Writes packed positions at the buffer's position, advancing it, without copying
+     * them into a temporary array first.
+     *
+     * @param positions The positions
+     * @param buffer The buffer, with {@code LONGS * positions.length} longs remaining
+     * @throws java.nio.BufferOverflowException if the buffer is too short; nothing is
+     *         written then
+     */
+    public static void writeAll (PackedPosition[] positions, LongBuffer buffer) {
+        if (buffer.remaining() < (long) positions.length * LONGS)
+            throw new java.nio.BufferOverflowException();
+        for (PackedPosition p : positions)
+            buffer.put(p.low).put(p.high);
+    }
+
+    /**
+     * Reads all the packed positions remaining in a buffer in one bulk transfer.
+     *
+     * @param buffer The buffer; its remaining length must be a multiple of {@link #LONGS}
+     * @return The positions
+     */
+    public static PackedPosition[] readAll (LongBuffer buffer) {
+        if (buffer.remaining() % LONGS != 0)
+            throw new IllegalArgumentException("odd number of longs: " + buffer.remaining());
+        long[] words = new long[buffer.remaining()];
+        PackedPosition[] positions = new PackedPosition[words.length / LONGS];
+
+        buffer.get(words);
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = new PackedPosition(words[i * LONGS], words[i * LONGS + 1]);
+        return positions;
+    }
+
+    /**
+     * Compares both words.
+     *
+     * @param other The other object
+     * @return true if it is a packed position with the same bits
+     */
+    @Override
+    public boolean equals (Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof PackedPosition))
+            return false;
+        PackedPosition p = (PackedPosition) other;
+        return low == p.low && high == p.high;
+    }
+
+    /**
+     * Mixes each word on its own before combining them, so that nearby positions, which
+     * differ in a few low bits of one field, spread over all the bits of the hash, and
+     * changes in the two words cannot cancel out.
+     *
+     * @return The hash code
+     */
+    @Override
+    public int hashCode () {
+        return mix(low) * 31 + mix(high);
+    }
+
+    /**
+     * Scrambles a word into an int, every bit of the word affecting every bit of the
+     * result.
+     *
+     * @param word The word
+     * @return The mixed bits
+     */
+    private static int mix (long word) {
+        long h = word * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ h >>> 32);
+    }
+
+    /**
+     * Formats the two words in hexadecimal.
+     *
+     * @return The words, high first
+     */
+    @Override
+    public String toString () {
+        return String.format("%016x%016x", high, low);
+    }
+
+    /**
+     * Checks packing on the positions of random games and reports the hash code
+     * collisions and the bulk buffer speed.
+     *
+     * @param args Ignored
+     */
+    public static void main (String[] args) {
+        RandomGames games = new RandomGames(1);
+        Position copy = new Position();
+        Set<PackedPosition> distinct = new HashSet<>();
+        Set<Long> hashes = new HashSet<>();
+        Set<Integer> codes = new HashSet<>();
+        PackedPosition[] all = new PackedPosition[200_000];
+        int count = 0;
+
+        while (count < all.length) {
+            Position pos = games.newGame();
+            do {
+                PackedPosition packed = of(pos);
+                packed.unpack(copy);
+                if (copy.hash() != pos.hash() || !of(copy).equals(packed))
+                    throw new AssertionError("round trip failed: " + packed);
+                all[count++] = packed;
+                if (distinct.add(packed))
+                    codes.add(packed.hashCode());
+                hashes.add(pos.hash());
+            } while (count < all.length && games.step());
+        }
+        if (distinct.size() != hashes.size())
+            throw new AssertionError(distinct.size() + " packed positions for " + hashes.size() + " keys");
+        if (!of(all[count - 1].toBoard()).equals(all[count - 1]))
+            throw new AssertionError("board round trip failed");
+        for (PackedPosition bad : new PackedPosition[] {new PackedPosition(all[0].low | 1L << 60, all[0].high),
+                new PackedPosition(all[0].low, all[0].high | 1L << SIDE_SHIFT + 1),
+                new PackedPosition(all[0].low | SQUARE_MASK, all[0].high | 1L << WEAK_SHIFT)}) {
+            try {
+                bad.unpack(copy);
+                throw new AssertionError("accepted " + bad);
+            }
+            catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        LongBuffer buffer = LongBuffer.allocate(count * LONGS);
+        long start = System.nanoTime();
+        writeAll(all, buffer);
+        buffer.flip();
+        PackedPosition[] back = readAll(buffer);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        for (int i = 0; i < count; i++)
+            if (!back[i].equals(all[i]))
+                throw new AssertionError("buffer round trip failed at " + i);
+
+        System.out.printf("%d positions (%d distinct, %d hash codes) round-tripped; %d KB in a buffer, written and read in %.1f ms%n",
+                count, distinct.size(), codes.size(), count * LONGS * 8 / 1024, seconds * 1e3);
+    }
+}
@@ -0,0 +1,200 @@
+package mpprog3.Engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import mpprog3.Controller.board;
+
+/**
+ * Perft (performance test) for the Jungle King rules engine.
+ * <p>
+ * Counts the leaf positions reachable in exactly N plies, walking the tree with
+ * {@link Position#makeMove(int)} and {@link Position#unmakeMove()}. A fixed position
+ * always has the same counts, so a changed count points at a change in the move rules,
+ * and the nodes per second show the speed of move generation and move application.
+ * <p>
+ * Supported modes:
+ * <ul>
+ *   <li>Plain count from the starting layout of {@link board#setPieces()} or any position</li>
+ *   <li>Divide: a separate count for every root move</li>
+ *   <li>Parallel: root moves split across cores with fork-join</li>
+ * </ul>
+ * A position where a piece has entered the enemy den ends the game and is not expanded.
+ *
+ * <p>Usage: {@code java mpprog3.Engine.Perft <depth> [--divide] [--parallel] [--threads N]}
+ */
+public final class Perft {
+    /** The position being walked with make/unmake. */
+    private final Position pos = new Position();
+    /** One move buffer per ply. */
+    private final int[][] moves;
+
+    /**
+     * Constructs a perft counter able to search up to a given depth.
+     *
+     * @param maxDepth The deepest search this counter will run
+     */
+    public Perft (int maxDepth) {
+        moves = new int[maxDepth + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     * Counts the leaf positions at a depth below a root position.
+     *
+     * @param root The root position (not modified)
+     * @param depth The depth in plies
+     * @return The number of leaf positions
+     */
+    public long count (Position root, int depth) {
+        pos.copyFrom(root);
+        return perft(0, depth);
+    }
+
+    /**
+     * Recursively counts leaves below the position at a ply.
+     *
+     * @param ply The current ply (index into the move buffers)
+     * @param depth The remaining depth
+     * @return The number of leaf positions
+     */
+    private long perft (int ply, int depth) {
+        if (depth == 0)
+            return 1;
+        if (pos.winner() != 0)
+            return 0;
+
+        int[] list = moves[ply];
+        int n = MoveGenerator.generate(pos, pos.getSideToMove(), list);
+        if (depth == 1)
+            return n;
+
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            pos.makeMove(list[i]);
+            nodes += perft(ply + 1, depth - 1);
+            pos.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Counts the leaves below each root move separately.
+     *
+     * @param root The root position (not modified)
+     * @param depth The depth in plies (at least 1)
+     * @param rootMoves Receives the root moves, at least {@link MoveGenerator#MAX_MOVES} long
+     * @param counts Receives the leaf count of each root move
+     * @return The number of root moves
+     */
+    public int divide (Position root, int depth, int[] rootMoves, long[] counts) {
+        int n = root.winner() != 0 ? 0 : MoveGenerator.generate(root, root.getSideToMove(), rootMoves);
+
+        for (int i = 0; i < n; i++) {
+            pos.copyFrom(root);
+            pos.makeMove(rootMoves[i]);
+            counts[i] = perft(1, depth - 1);
+        }
+        return n;
+    }
+
+    /**
+     * Counts the leaves below each root move in parallel, one fork-join task per root move.
+     *
+     * @param root The root position (not modified)
+     * @param depth The depth in plies (at least 1)
+     * @param threads The parallelism of the fork-join pool
+     * @param rootMoves Receives the root moves, at least {@link MoveGenerator#MAX_MOVES} long
+     * @param counts Receives the leaf count of each root move
+     * @return The number of root moves
+     */
+    public static int divideParallel (Position root, int depth, int threads, int[] rootMoves, long[] counts) {
+        int n = root.winner() != 0 ? 0 : MoveGenerator.generate(root, root.getSideToMove(), rootMoves);
+        RootTask[] tasks = new RootTask[n];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            for (int i = 0; i < n; i++) {
+                Position child = new Position(root);
+                child.makeMove(rootMoves[i]);
+                tasks[i] = new RootTask(child, depth - 1);
+                pool.execute(tasks[i]);
+            }
+            for (int i = 0; i < n; i++)
+                counts[i] = tasks[i].join();
+        }
+        finally {
+            pool.shutdown();
+        }
+        return n;
+    }
+
+    /**
+     * Fork-join task counting the leaves below one root move.
+     */
+    private static final class RootTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final Position child;
+        private final int depth;
+
+        RootTask (Position child, int depth) {
+            this.child = child;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute () {
+            return new Perft(depth).count(child, depth);
+        }
+    }
+
+    /**
+     * Runs perft from the starting layout and prints the counts and nodes per second.
+     *
+     * @param args {@code <depth> [--divide] [--parallel] [--threads N]}
+     */
+    public static void main (String[] args) {
+        int depth = 5, threads = Runtime.getRuntime().availableProcessors();
+        boolean divide = false, parallel = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--divide":
+                    divide = true;
+                    break;
+                case "--parallel":
+                    parallel = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        Position root = new board().getPosition();
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        long[] counts = new long[MoveGenerator.MAX_MOVES];
+        long nodes = 0, start = System.nanoTime();
+
+        if (depth < 1) {
+            nodes = 1;
+        }
+        else if (divide || parallel) {
+            int n = parallel ? divideParallel(root, depth, threads, rootMoves, counts)
+                             : new Perft(depth).divide(root, depth, rootMoves, counts);
+            for (int i = 0; i < n; i++) {
+                if (divide)
+                    System.out.println(Move.toString(rootMoves[i]) + ": " + counts[i]);
+                nodes += counts[i];
+            }
+        }
+        else {
+            nodes = new Perft(depth).count(root, depth);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("perft(%d) = %d nodes in %.3f s (%.0f nodes/s%s)%n", depth, nodes, seconds,
+                nodes / Math.max(seconds, 1e-9), parallel ? ", " + threads + " threads" : "");
+    }
+}
@@ -0,0 +1,590 @@
+package mpprog3.Engine;
+
+/**
+ * Bitboard representation of a Jungle King position.
+ * <p>
+ * The 7x9 board is flattened row by row into squares 0-62
+ * ({@code square = row * 9 + col}), so any set of squares fits in one {@code long}.
+ * A position keeps:
+ * <ul>
+ *   <li>One occupancy mask per piece type per player</li>
+ *   <li>One combined occupancy mask per player</li>
+ *   <li>A mask of the squares holding pieces weakened by an enemy trap</li>
+ *   <li>A square-indexed mailbox answering "which piece stands here" in one array load</li>
+ *   <li>The player to move</li>
+ *   <li>A 64-bit {@link Zobrist} key, updated incrementally with every change</li>
+ *   <li>The sum of the {@link Evaluator} piece-square values, updated the same way</li>
+ *   <li>An undo stack of the moves made with {@link #makeMove(int)}</li>
+ * </ul>
+ *
+ * <p>Terrain never changes during a game, so lakes, traps and dens are constant masks.
+ * Pieces are identified by a small index, {@code (player - 1) * 8 + type}, where the
+ * type is the piece strength minus one (rat = 0 ... elephant = 7).
+ *
+ * @see mpprog3.Controller.board
+ */
+public final class Position {
+    /** Number of rows on the board. */
+    public static final int ROWS = 7;
+    /** Number of columns on the board. */
+    public static final int COLS = 9;
+    /** Number of squares on the board. */
+    public static final int SQUARES = ROWS * COLS;
+
+    /** Piece type constants, equal to the piece strength minus one. */
+    public static final int RAT = 0, CAT = 1, DOG = 2, WOLF = 3, LEOPARD = 4, TIGER = 5, LION = 6, ELEPHANT = 7;
+    /** Number of piece types per player. */
+    public static final int TYPES = 8;
+    /** Number of piece indices (both players). */
+    public static final int PIECES = 2 * TYPES;
+    /** Mailbox value of an empty square. */
+    public static final int EMPTY = -1;
+
+    /** Mask of every square on the board. */
+    public static final long BOARD = (1L << SQUARES) - 1;
+    /** Den of player 1 (blue), row 3 column 0. */
+    public static final int DEN_1 = 3 * COLS;
+    /** Den of player 2 (green), row 3 column 8. */
+    public static final int DEN_2 = 3 * COLS + 8;
+    /** Both lakes: rows 1-2 and 4-5, columns 3-5. */
+    public static final long LAKE;
+    /** Traps surrounding player 1's den; they weaken player 2's pieces. */
+    public static final long TRAPS_1;
+    /** Traps surrounding player 2's den; they weaken player 1's pieces. */
+    public static final long TRAPS_2;
+    /** Both dens. */
+    public static final long DENS = (1L << DEN_1) | (1L << DEN_2);
+
+    static {
+        long lake = 0;
+        for (int r = 1; r <= 5; r++) {
+            if (r == 3)
+                continue;
+            for (int c = 3; c <= 5; c++)
+                lake |= 1L << square(r, c);
+        }
+        LAKE = lake;
+        TRAPS_1 = bit(2, 0) | bit(3, 1) | bit(4, 0);
+        TRAPS_2 = bit(2, 8) | bit(3, 7) | bit(4, 8);
+    }
+
+    /** Occupancy mask per piece index. */
+    private final long[] pieceMasks = new long[PIECES];
+    /** Combined occupancy mask per player (index 0 = player 1). */
+    private final long[] playerMasks = new long[2];
+    /** Squares holding a weakened piece. */
+    private long weak;
+    /** Piece index standing on each square, or {@link #EMPTY}. */
+    private final byte[] mailbox = new byte[SQUARES];
+    /** The player (1 or 2) whose turn it is. */
+    private int sideToMove = 1;
+    /** Zobrist key of the current state. */
+    private long hash;
+    /** Sum of the piece-square values of the pieces, from player 1's point of view. */
+    private int score;
+
+    /** Undo flag: the moving piece was weak before the move. */
+    private static final int UNDO_MOVER_WEAK = 1 << 23;
+    /** Undo flag: the captured piece was weak. */
+    private static final int UNDO_CAPTURED_WEAK = 1 << 24;
+    /**
+     * Undo stack: one entry per made move, holding the packed move (which already names
+     * the captured piece and, through its square, that piece's terrain) plus the weakness
+     * of the mover and the captured piece.
+     */
+    private int[] undo = new int[256];
+    /** Number of entries on the undo stack. */
+    private int undoSize;
+
+    /**
+     * Constructs an empty position with player 1 to move.
+     */
+    public Position () {
+        clear();
+    }
+
+    /**
+     * Constructs a copy of another position.
+     *
+     * @param other The position to copy
+     */
+    public Position (Position other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrites this position with the contents of another without allocating.
+     * The move history is not copied; the undo stack of this position is emptied.
+     *
+     * @param other The position to copy
+     */
+    public void copyFrom (Position other) {
+        System.arraycopy(other.pieceMasks, 0, pieceMasks, 0, PIECES);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, SQUARES);
+        playerMasks[0] = other.playerMasks[0];
+        playerMasks[1] = other.playerMasks[1];
+        weak = other.weak;
+        sideToMove = other.sideToMove;
+        hash = other.hash;
+        score = other.score;
+        undoSize = 0;
+    }
+
+    /**
+     * Removes every piece and gives the move to player 1.
+     */
+    public void clear () {
+        java.util.Arrays.fill(pieceMasks, 0L);
+        java.util.Arrays.fill(mailbox, (byte) EMPTY);
+        playerMasks[0] = playerMasks[1] = 0L;
+        weak = 0L;
+        sideToMove = 1;
+        hash = 0L;
+        score = 0;
+        undoSize = 0;
+    }
+
+    /**
+     * Converts a row and column to a square number.
+     *
+     * @param row The row (0-6)
+     * @param col The column (0-8)
+     * @return The square number (0-62)
+     */
+    public static int square (int row, int col) {
+        return row * COLS + col;
+    }
+
+    /**
+     * Returns the row of a square.
+     *
+     * @param sq The square (0-62)
+     * @return The row (0-6)
+     */
+    public static int row (int sq) {
+        return sq / COLS;
+    }
+
+    /**
+     * Returns the column of a square.
+     *
+     * @param sq The square (0-62)
+     * @return The column (0-8)
+     */
+    public static int col (int sq) {
+        return sq % COLS;
+    }
+
+    /**
+     * Returns the single-bit mask of a row and column.
+     *
+     * @param row The row (0-6)
+     * @param col The column (0-8)
+     * @return The mask with only that square set
+     */
+    public static long bit (int row, int col) {
+        return 1L << square(row, col);
+    }
+
+    /**
+     * Returns the piece index for a player and piece type.
+     *
+     * @param player The player (1 or 2)
+     * @param type The piece type ({@link #RAT} to {@link #ELEPHANT})
+     * @return The piece index (0-15)
+     */
+    public static int index (int player, int type) {
+        return ((player - 1) << 3) | type;
+    }
+
+    /**
+     * Returns the owner of a piece index.
+     *
+     * @param piece The piece index (0-15)
+     * @return The player (1 or 2)
+     */
+    public static int playerOf (int piece) {
+        return (piece >> 3) + 1;
+    }
+
+    /**
+     * Returns the type of a piece index, which is also its strength minus one.
+     *
+     * @param piece The piece index (0-15)
+     * @return The piece type (0-7)
+     */
+    public static int typeOf (int piece) {
+        return piece & 7;
+    }
+
+    /**
+     * Returns the opponent of a player.
+     *
+     * @param player The player (1 or 2)
+     * @return The other player
+     */
+    public static int opponent (int player) {
+        return 3 - player;
+    }
+
+    /**
+     * Checks if a square is part of a lake.
+     *
+     * @param sq The square (0-62)
+     * @return true if the square is water
+     */
+    public static boolean isLake (int sq) {
+        return (LAKE >>> sq & 1L) != 0;
+    }
+
+    /**
+     * Checks if a square is a trap of either player.
+     *
+     * @param sq The square (0-62)
+     * @return true if the square is a trap
+     */
+    public static boolean isTrap (int sq) {
+        return ((TRAPS_1 | TRAPS_2) >>> sq & 1L) != 0;
+    }
+
+    /**
+     * Checks if a square is a den of either player.
+     *
+     * @param sq The square (0-62)
+     * @return true if the square is a den
+     */
+    public static boolean isDen (int sq) {
+        return sq == DEN_1 || sq == DEN_2;
+    }
+
+    /**
+     * Returns the den a player defends.
+     *
+     * @param player The player (1 or 2)
+     * @return The square of that player's own den
+     */
+    public static int den (int player) {
+        return player == 1 ? DEN_1 : DEN_2;
+    }
+
+    /**
+     * Returns the traps that weaken a player's pieces, i.e. the traps around the enemy den.
+     *
+     * @param player The player (1 or 2)
+     * @return The mask of traps hostile to that player
+     */
+    public static long enemyTraps (int player) {
+        return player == 1 ? TRAPS_2 : TRAPS_1;
+    }
+
+    /**
+     * Returns the terrain character of a square using the same symbols as {@link mpprog3.Model.Grid}:
+     * '~' lake, '#' trap, '@' den and '.' for normal ground.
+     *
+     * @param sq The square (0-62)
+     * @return The terrain character
+     */
+    public static char terrain (int sq) {
+        if (isLake(sq))
+            return '~';
+        if (isTrap(sq))
+            return '#';
+        if (isDen(sq))
+            return '@';
+        return '.';
+    }
+
+    /**
+     * Places a piece on an empty square. Weakness is not changed.
+     *
+     * @param piece The piece index (0-15)
+     * @param sq The square (0-62)
+     */
+    public void put (int piece, int sq) {
+        long b = 1L << sq;
+        pieceMasks[piece] |= b;
+        playerMasks[piece >> 3] |= b;
+        mailbox[sq] = (byte) piece;
+        hash ^= Zobrist.piece(piece, sq);
+        score += Evaluator.value(piece, sq);
+    }
+
+    /**
+     * Removes whatever piece stands on a square and clears its weakness.
+     *
+     * @param sq The square (0-62)
+     * @return The removed piece index, or {@link #EMPTY} if the square was empty
+     */
+    public int remove (int sq) {
+        int piece = mailbox[sq];
+        if (piece == EMPTY)
+            return EMPTY;
+        long b = ~(1L << sq);
+        pieceMasks[piece] &= b;
+        playerMasks[piece >> 3] &= b;
+        if ((weak >>> sq & 1L) != 0) {
+            weak &= b;
+            hash ^= Zobrist.weak(sq);
+        }
+        mailbox[sq] = (byte) EMPTY;
+        hash ^= Zobrist.piece(piece, sq);
+        score -= Evaluator.value(piece, sq);
+        return piece;
+    }
+
+    /**
+     * Returns the piece standing on a square.
+     *
+     * @param sq The square (0-62)
+     * @return The piece index, or {@link #EMPTY}
+     */
+    public int pieceAt (int sq) {
+        return mailbox[sq];
+    }
+
+    /**
+     * Returns the piece standing at a row and column.
+     *
+     * @param row The row (0-6)
+     * @param col The column (0-8)
+     * @return The piece index, or {@link #EMPTY}
+     */
+    public int pieceAt (int row, int col) {
+        return mailbox[row * COLS + col];
+    }
+
+    /**
+     * Checks if a square holds no piece.
+     *
+     * @param sq The square (0-62)
+     * @return true if the square is empty
+     */
+    public boolean isEmpty (int sq) {
+        return mailbox[sq] == EMPTY;
+    }
+
+    /**
+     * Returns the square of a piece.
+     *
+     * @param piece The piece index (0-15)
+     * @return The square (0-62), or 64 if the piece has been captured
+     */
+    public int squareOf (int piece) {
+        return Long.numberOfTrailingZeros(pieceMasks[piece]);
+    }
+
+    /**
+     * Returns the occupancy mask of a single piece index.
+     *
+     * @param piece The piece index (0-15)
+     * @return The mask (empty if the piece was captured)
+     */
+    public long pieces (int piece) {
+        return pieceMasks[piece];
+    }
+
+    /**
+     * Returns the occupancy mask of one piece type of one player.
+     *
+     * @param player The player (1 or 2)
+     * @param type The piece type (0-7)
+     * @return The mask
+     */
+    public long pieces (int player, int type) {
+        return pieceMasks[index(player, type)];
+    }
+
+    /**
+     * Returns every square occupied by a player.
+     *
+     * @param player The player (1 or 2)
+     * @return The mask
+     */
+    public long occupied (int player) {
+        return playerMasks[player - 1];
+    }
+
+    /**
+     * Returns every occupied square.
+     *
+     * @return The mask
+     */
+    public long occupied () {
+        return playerMasks[0] | playerMasks[1];
+    }
+
+    /**
+     * Returns the squares holding weakened pieces.
+     *
+     * @return The mask
+     */
+    public long weak () {
+        return weak;
+    }
+
+    /**
+     * Checks if the piece on a square is weakened by a trap.
+     *
+     * @param sq The square (0-62)
+     * @return true if weakened
+     */
+    public boolean isWeak (int sq) {
+        return (weak >>> sq & 1L) != 0;
+    }
+
+    /**
+     * Sets or clears the weakness of the piece on a square.
+     *
+     * @param sq The square (0-62)
+     * @param isWeak The new weakness
+     */
+    public void setWeak (int sq, boolean isWeak) {
+        if (isWeak != isWeak(sq))
+            toggleWeak(sq);
+    }
+
+    /**
+     * Flips the weakness bit of a square and its key.
+     *
+     * @param sq The square (0-62)
+     */
+    private void toggleWeak (int sq) {
+        weak ^= 1L << sq;
+        hash ^= Zobrist.weak(sq);
+    }
+
+    /**
+     * Makes a packed move produced by {@link MoveGenerator}: removes any captured piece,
+     * moves the piece, weakens it if it landed on an enemy trap (as
+     * {@link mpprog3.Controller.board#trapped} does) and passes the turn.
+     * <p>
+     * The move is pushed on the undo stack so {@link #unmakeMove()} can reverse it.
+     * Nothing is allocated unless the stack has to grow.
+     *
+     * @param move The packed move
+     */
+    public void makeMove (int move) {
+        int from = Move.from(move), to = Move.to(move), piece = Move.piece(move);
+        int entry = move;
+
+        if ((weak >>> from & 1L) != 0)
+            entry |= UNDO_MOVER_WEAK;
+        if ((weak >>> to & 1L) != 0)
+            entry |= UNDO_CAPTURED_WEAK;
+        if (undoSize == undo.length)
+            undo = java.util.Arrays.copyOf(undo, undoSize * 2);
+        undo[undoSize++] = entry;
+
+        remove(to);
+        remove(from);
+        put(piece, to);
+        if ((enemyTraps(playerOf(piece)) >>> to & 1L) != 0)
+            toggleWeak(to);
+        sideToMove = opponent(playerOf(piece));
+        hash ^= Zobrist.SIDE;
+    }
+
+    /**
+     * Reverses the last move made with {@link #makeMove(int)}, restoring the captured
+     * piece with its weakness and the mover's previous weakness.
+     *
+     * @return The packed move that was undone
+     * @throws IllegalStateException if there is no move to undo
+     */
+    public int unmakeMove () {
+        if (undoSize == 0)
+            throw new IllegalStateException("no move to undo");
+
+        int entry = undo[--undoSize];
+        int move = entry & (UNDO_MOVER_WEAK - 1);
+        int from = Move.from(move), to = Move.to(move), piece = Move.piece(move);
+        int captured = Move.captured(move);
+
+        remove(to);
+        put(piece, from);
+        if ((entry & UNDO_MOVER_WEAK) != 0)
+            toggleWeak(from);
+        if (captured != EMPTY) {
+            put(captured, to);
+            if ((entry & UNDO_CAPTURED_WEAK) != 0)
+                toggleWeak(to);
+        }
+        sideToMove = playerOf(piece);
+        hash ^= Zobrist.SIDE;
+        return move;
+    }
+
+    /**
+     * Returns the number of moves that can be undone.
+     *
+     * @return The size of the undo stack
+     */
+    public int historySize () {
+        return undoSize;
+    }
+
+    /**
+     * Returns a move from the undo stack.
+     *
+     * @param i The index, 0 being the oldest move
+     * @return The packed move
+     */
+    public int historyMove (int i) {
+        return undo[i] & (UNDO_MOVER_WEAK - 1);
+    }
+
+    /**
+     * Returns the player who has won by entering the enemy den.
+     *
+     * @return 1 or 2, or 0 if neither den has been entered
+     */
+    public int winner () {
+        if ((playerMasks[1] >>> DEN_1 & 1L) != 0)
+            return 2;
+        if ((playerMasks[0] >>> DEN_2 & 1L) != 0)
+            return 1;
+        return 0;
+    }
+
+    /**
+     * Returns the player to move.
+     *
+     * @return 1 or 2
+     */
+    public int getSideToMove () {
+        return sideToMove;
+    }
+
+    /**
+     * Sets the player to move.
+     *
+     * @param player 1 or 2
+     */
+    public void setSideToMove (int player) {
+        if (player != sideToMove)
+            hash ^= Zobrist.SIDE;
+        sideToMove = player;
+    }
+
+    /**
+     * Returns the Zobrist key of the position, covering piece placement, weakness and
+     * the side to move.
+     *
+     * @return The 64-bit key
+     * @see Zobrist
+     */
+    public long hash () {
+        return hash;
+    }
+
+    /**
+     * Returns the sum of the {@link Evaluator} piece-square values of the pieces on the
+     * board, kept up to date as pieces are put and removed.
+     *
+     * @return The sum from player 1's point of view
+     * @see Evaluator#evaluate(Position, int)
+     */
+    public int score () {
+        return score;
+    }
+}
@@ -0,0 +1,84 @@
+package mpprog3.Engine;
+
+import java.util.SplittableRandom;
+import mpprog3.Controller.board;
+
+/**
+ * Seeded random games, for the self-checks that walk many real positions.
+ * <p>
+ * Every game starts from the layout of a new {@link board} and plays uniformly random
+ * legal moves with {@link Position#makeMove(int)} until a player wins, the side to move
+ * has no move, or the ply limit is reached. The games only depend on the seed, so a
+ * check that fails can be run again on the same positions. The undo history of each
+ * game is kept, so a check can also take the moves back.
+ *
+ * @see mpprog3.Benchmark.Corpus
+ */
+public final class RandomGames {
+    /** Default ply limit of a game. */
+    public static final int DEFAULT_PLIES = 200;
+
+    /** Source of the moves of every game. */
+    private final SplittableRandom random;
+    /** Moves played at most in one game. */
+    private final int maxPlies;
+    /** Buffer of the legal moves. */
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    /** The game being played, or null before the first. */
+    private Position position;
+    /** Moves played in the current game. */
+    private int ply;
+
+    /**
+     * Constructs a source of games with the default ply limit.
+     *
+     * @param seed The seed of the moves
+     */
+    public RandomGames (long seed) {
+        this(seed, DEFAULT_PLIES);
+    }
+
+    /**
+     * Constructs a source of games.
+     *
+     * @param seed The seed of the moves
+     * @param maxPlies The moves played at most in one game
+     */
+    public RandomGames (long seed, int maxPlies) {
+        random = new SplittableRandom(seed);
+        this.maxPlies = maxPlies;
+    }
+
+    /**
+     * Starts the next game.
+     *
+     * @return Its position, at the starting layout with player 1 to move; it is the
+     *         position {@link #step()} then plays on
+     */
+    public Position newGame () {
+        position = new board().getPosition();
+        ply = 0;
+        return position;
+    }
+
+    /**
+     * Plays a random move in the current game, unless it is over.
+     *
+     * @return true if a move was played, false if a player has won, the side to move has
+     *         no move or the ply limit is reached
+     * @throws IllegalStateException if no game was started
+     */
+    public boolean step () {
+        if (position == null)
+            throw new IllegalStateException("no game started");
+        if (ply == maxPlies || position.winner() != 0)
+            return false;
+
+        int n = MoveGenerator.generate(position, position.getSideToMove(), moves);
+        if (n == 0)
+            return false;
+        position.makeMove(moves[random.nextInt(n)]);
+        ply++;
+        return true;
+    }
+}
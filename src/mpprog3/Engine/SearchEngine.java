@@ -0,0 +1,49 @@
+package mpprog3.Engine;
+
+/**
+ * A computer player that picks a move for the side to move of a {@link Position}.
+ * <p>
+ * Implementations search on their own copy of the position, so the caller's position
+ * (usually the one behind {@link mpprog3.Controller.board}) is never modified and the
+ * chosen move can be applied through the normal board rules afterwards.
+ *
+ * @see AlphaBeta
+ */
+public interface SearchEngine {
+    /**
+     * Chooses a move for the side to move.
+     *
+     * @param root The position to search (not modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @return The packed {@link Move}, or {@link Move#NONE} if the side to move has no legal move
+     */
+    int bestMove (Position root, long millis);
+
+    /**
+     * Chooses a move for the side to move of a game in progress. Engines that know the
+     * draw rules avoid or seek repetitions of the game's positions; the others ignore
+     * the history.
+     *
+     * @param root The position to search (not modified)
+     * @param history The positions of the game up to and including the root (not modified)
+     * @param millis The wall-clock budget in milliseconds
+     * @return The packed {@link Move}, or {@link Move#NONE} if the side to move has no legal move
+     */
+    default int bestMove (Position root, DrawDetector history, long millis) {
+        return bestMove(root, millis);
+    }
+
+    /**
+     * Describes the last search, e.g. the depth reached and the nodes per second.
+     *
+     * @return A one-line report
+     */
+    String report ();
+
+    /**
+     * Returns a short display name of the engine.
+     *
+     * @return The name
+     */
+    String name ();
+}
@@ -0,0 +1,288 @@
+package mpprog3.Engine;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static mpprog3.Engine.Position.*;
+
+/**
+ * Read-only access to endgame tablebases written by {@link TablebaseGenerator}.
+ * <p>
+ * A table covers one material set: a fixed subset of the 16 pieces, identified by a
+ * 16-bit mask of piece indices and named by a signature such as {@code ER_L}
+ * (player 1's pieces, an underscore, then player 2's pieces, letters as in
+ * {@link Move#letter(int)}). Each file holds an {@value #HEADER_BYTES}-byte header followed by one
+ * byte per position:
+ * <ul>
+ *   <li>The index is built from the squares of the pieces in ascending piece order,
+ *       base 63, times two plus the side to move (0 for player 1)</li>
+ *   <li>Weakness is not stored: a piece is weak exactly when it stands on an enemy trap</li>
+ *   <li>A positive byte {@code b} is a win for the side to move in {@code 2b - 1} plies</li>
+ *   <li>A negative byte {@code b} is a loss in {@code -2b - 2} plies</li>
+ *   <li>Zero is a draw (neither side can force a win), or an impossible position</li>
+ * </ul>
+ * The files are mapped with {@link FileChannel#map}, so a probe is one memory read and
+ * tables are paged in by the operating system as they are used.
+ *
+ * @see TablebaseGenerator
+ */
+public final class Tablebase {
+    /** File name extension of the tables. */
+    public static final String EXTENSION = ".jtb";
+    /** Directory opened by {@link #openDefault()}. */
+    public static final String DEFAULT_DIRECTORY = "tablebases";
+    /** Probe result for material without a table. */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    /** File magic, "JKTB". */
+    static final int MAGIC = 0x4A4B5442;
+    /** Header size: magic, piece mask, piece count and format version. */
+    static final int HEADER_BYTES = 8;
+    /** File format version. */
+    static final int VERSION = 1;
+
+    /** The shared default tablebase, or null before the first {@link #openDefault()}. */
+    private static Tablebase defaultTablebase;
+    /** Whether {@link #openDefault()} has already run. */
+    private static boolean defaultOpened;
+
+    /** Mapped tables indexed by piece mask; null where there is no table. */
+    private final MappedByteBuffer[] tables = new MappedByteBuffer[1 << PIECES];
+    /** Most pieces in any loaded table. */
+    private int maxPieces;
+    /** Number of loaded tables. */
+    private int count;
+
+    /**
+     * Maps every table file in a directory.
+     *
+     * @param directory The directory holding {@value #EXTENSION} files
+     * @throws IOException if a file cannot be read or is not a valid table
+     */
+    public Tablebase (Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files)
+                load(file);
+        }
+    }
+
+    /**
+     * Opens the tables in {@value #DEFAULT_DIRECTORY} once and shares them.
+     *
+     * @return The tablebase, or null if the directory does not exist or cannot be read
+     */
+    public static synchronized Tablebase openDefault () {
+        if (!defaultOpened) {
+            defaultOpened = true;
+            Path directory = Paths.get(DEFAULT_DIRECTORY);
+            try {
+                if (Files.isDirectory(directory))
+                    defaultTablebase = new Tablebase(directory);
+            }
+            catch (IOException e) {
+                System.err.println("Tablebases not loaded: " + e.getMessage());
+            }
+        }
+        return defaultTablebase;
+    }
+
+    /**
+     * Maps one table file.
+     *
+     * @param file The file
+     * @throws IOException if the file cannot be read or is not a valid table
+     */
+    private void load (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            map.order(ByteOrder.BIG_ENDIAN);
+
+            if (map.capacity() < HEADER_BYTES || map.getInt(0) != MAGIC || map.get(7) != VERSION)
+                throw new IOException(file + ": not a tablebase file");
+            int mask = map.getShort(4) & 0xFFFF, pieces = map.get(6);
+            if (pieces != Integer.bitCount(mask) || map.capacity() != HEADER_BYTES + size(mask))
+                throw new IOException(file + ": wrong size for " + signature(mask));
+
+            tables[mask] = map;
+            maxPieces = Math.max(maxPieces, pieces);
+            count++;
+        }
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param pos The position
+     * @return The stored byte (see the class comment), or {@link #UNKNOWN} if its
+     *         material has no table
+     */
+    public int probe (Position pos) {
+        int mask = materialOf(pos);
+        MappedByteBuffer table = tables[mask];
+
+        if (table == null)
+            return UNKNOWN;
+        return table.get(HEADER_BYTES + (int) index(pos, mask));
+    }
+
+    /**
+     * Returns the largest number of pieces covered by a loaded table.
+     *
+     * @return The piece count, 0 if no table is loaded
+     */
+    public int getMaxPieces () {
+        return maxPieces;
+    }
+
+    /**
+     * Returns the number of loaded tables.
+     *
+     * @return The table count
+     */
+    public int getCount () {
+        return count;
+    }
+
+    /**
+     * Returns the set of pieces on the board.
+     *
+     * @param pos The position
+     * @return A mask with bit {@code piece} set for each piece still on the board
+     */
+    public static int materialOf (Position pos) {
+        int mask = 0;
+        for (int piece = 0; piece < PIECES; piece++)
+            if (pos.pieces(piece) != 0)
+                mask |= 1 << piece;
+        return mask;
+    }
+
+    /**
+     * Returns the number of positions of a material set.
+     *
+     * @param mask The pieces
+     * @return 63 to the power of the piece count, times two sides to move
+     */
+    public static long size (int mask) {
+        long size = 2;
+        for (int k = Integer.bitCount(mask); k > 0; k--)
+            size *= SQUARES;
+        return size;
+    }
+
+    /**
+     * Returns the index of a position in the table of its material.
+     *
+     * @param pos The position
+     * @param mask The pieces on the board
+     * @return The index
+     */
+    public static long index (Position pos, int mask) {
+        long index = 0;
+        for (int m = mask; m != 0; m &= m - 1)
+            index = index * SQUARES + pos.squareOf(Integer.numberOfTrailingZeros(m));
+        return index * 2 + pos.getSideToMove() - 1;
+    }
+
+    /**
+     * Checks if a stored byte is a win for the side to move.
+     *
+     * @param value The stored byte
+     * @return true for a win
+     */
+    public static boolean isWin (int value) {
+        return value > 0;
+    }
+
+    /**
+     * Checks if a stored byte is a loss for the side to move.
+     *
+     * @param value The stored byte
+     * @return true for a loss
+     */
+    public static boolean isLoss (int value) {
+        return value < 0 && value != UNKNOWN;
+    }
+
+    /**
+     * Returns the distance of a win or loss.
+     *
+     * @param value The stored byte
+     * @return The plies until the game ends with best play, 0 for a draw
+     */
+    public static int plies (int value) {
+        return value > 0 ? 2 * value - 1 : value < 0 ? -2 * value - 2 : 0;
+    }
+
+    /**
+     * Encodes a win in an odd number of plies.
+     *
+     * @param plies The distance, 1 to 253
+     * @return The stored byte
+     */
+    static byte win (int plies) {
+        return (byte) ((plies + 1) / 2);
+    }
+
+    /**
+     * Encodes a loss in an even number of plies.
+     *
+     * @param plies The distance, 0 to 254
+     * @return The stored byte
+     */
+    static byte loss (int plies) {
+        return (byte) (-plies / 2 - 1);
+    }
+
+    /**
+     * Returns the name of a material set, e.g. {@code ER_L}.
+     *
+     * @param mask The pieces
+     * @return Player 1's letters, an underscore and player 2's letters, strongest first
+     */
+    public static String signature (int mask) {
+        StringBuilder sb = new StringBuilder();
+
+        for (int player = 1; player <= 2; player++) {
+            if (player == 2)
+                sb.append('_');
+            for (int type = ELEPHANT; type >= RAT; type--)
+                if ((mask >>> Position.index(player, type) & 1) != 0)
+                    sb.append(Move.letter(Position.index(1, type)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a material signature.
+     *
+     * @param signature Player 1's letters, an underscore and player 2's letters, e.g.
+     *                  {@code ER_L}; letters are not case sensitive
+     * @return The piece mask
+     * @throws IllegalArgumentException if the signature is malformed
+     */
+    public static int parseSignature (String signature) {
+        int split = signature.indexOf('_'), mask = 0;
+
+        if (split < 0 || signature.indexOf('_', split + 1) >= 0)
+            throw new IllegalArgumentException("signature needs one '_': " + signature);
+        for (int i = 0; i < signature.length(); i++) {
+            if (i == split)
+                continue;
+            int type = "RCDWPTLE".indexOf(Character.toUpperCase(signature.charAt(i)));
+            if (type < 0)
+                throw new IllegalArgumentException("unknown piece letter in " + signature);
+            int bit = 1 << Position.index(i < split ? 1 : 2, type);
+            if ((mask & bit) != 0)
+                throw new IllegalArgumentException("piece repeated in " + signature);
+            mask |= bit;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,344 @@
+package mpprog3.Engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static mpprog3.Engine.Position.*;
+
+/**
+ * Solves endgames by retrograde analysis and writes them as {@link Tablebase} files.
+ * <p>
+ * Every position of a material set is solved, after every smaller set it can reach by
+ * captures. Moves come from {@link MoveGenerator}, which follows the capture rules of
+ * {@link mpprog3.Model.Piece#capture}, {@link mpprog3.Model.rat#canBeCapturedBy} and
+ * {@link mpprog3.Model.elephant#capture}, including lake and trap cases. The table is
+ * solved in passes:
+ * <ol>
+ *   <li>Pass 0 marks impossible positions and positions already lost by the side to
+ *       move (an enemy piece in its den, or no legal move)</li>
+ *   <li>Pass {@code n} marks a position won in {@code n} plies if a move reaches a
+ *       position lost in less than {@code n}, and lost in {@code n} plies if every move
+ *       reaches a position won in less than {@code n}</li>
+ *   <li>The passes stop once one resolves nothing and no smaller table has a longer
+ *       distance; the remaining positions are draws</li>
+ * </ol>
+ * Each pass runs in parallel on a fork-join pool. A pass only reads results of earlier
+ * passes, so its tasks can write the table without locks.
+ *
+ * @see Tablebase
+ */
+public final class TablebaseGenerator {
+    /** Most pieces per table; five would not fit one mapped buffer. */
+    public static final int MAX_PIECES = 4;
+    /** Positions per fork-join task; a multiple of 64 so tasks never share a word of {@code done}. */
+    private static final int CHUNK = 1 << 14;
+    /** Longest distance a table byte can hold. */
+    private static final int MAX_PLIES = 253;
+
+    /** The pool running the passes. */
+    private final ForkJoinPool pool;
+    /** Solved tables by piece mask. */
+    private final Map<Integer, byte[]> solved = new HashMap<>();
+    /** Longest win or loss of each solved table. */
+    private final Map<Integer, Integer> longest = new HashMap<>();
+
+    /**
+     * Constructs a generator.
+     *
+     * @param threads The parallelism of the fork-join pool
+     */
+    public TablebaseGenerator (int threads) {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Solves a material set and, first, every set it can reach by captures.
+     *
+     * @param mask The pieces
+     * @return The table, one byte per position as described in {@link Tablebase}
+     * @throws IllegalArgumentException if the set has more than {@link #MAX_PIECES} pieces
+     */
+    public byte[] solve (int mask) {
+        if (Integer.bitCount(mask) > MAX_PIECES)
+            throw new IllegalArgumentException("at most " + MAX_PIECES + " pieces: " + Tablebase.signature(mask));
+
+        byte[] table = solved.get(mask);
+        if (table == null) {
+            for (int m = mask; m != 0 && Integer.bitCount(mask) > 1; m &= m - 1)
+                solve(mask & ~Integer.lowestOneBit(m)); // a lone piece cannot capture
+            table = compute(mask);
+            solved.put(mask, table);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the material sets solved so far.
+     *
+     * @return The piece masks, smaller sets first
+     */
+    public List<Integer> solvedMasks () {
+        return new ArrayList<>(solved.keySet());
+    }
+
+    /**
+     * Runs the passes over one material set whose smaller sets are solved.
+     *
+     * @param mask The pieces
+     * @return The table
+     */
+    private byte[] compute (int mask) {
+        long start = System.nanoTime();
+        int size = (int) Tablebase.size(mask), maxSub = 0, n, wins = 0, losses = 0, max = 0;
+        Pass pass = new Pass(mask, new byte[size], new long[(size + 63) / 64]);
+
+        for (int m = mask; m != 0 && Integer.bitCount(mask) > 1; m &= m - 1) {
+            int piece = Integer.numberOfTrailingZeros(m);
+            pass.sub[piece] = solved.get(mask & ~(1 << piece));
+            maxSub = Math.max(maxSub, longest.get(mask & ~(1 << piece)));
+        }
+
+        for (n = 0; ; n++) {
+            if (n > MAX_PLIES)
+                throw new IllegalStateException(Tablebase.signature(mask) + ": distance over " + MAX_PLIES + " plies");
+            int resolved = pool.invoke(pass.new Task(0, size, n));
+            if (resolved > 0)
+                max = n;
+            else if (n > maxSub)
+                break;
+        }
+
+        for (byte value : pass.data) {
+            if (Tablebase.isWin(value))
+                wins++;
+            else if (Tablebase.isLoss(value))
+                losses++;
+        }
+        longest.put(mask, max);
+        System.out.printf("%-10s %,12d positions: %,d wins, %,d losses, longest %d plies, %.1f s%n",
+                Tablebase.signature(mask), size, wins, losses, max, (System.nanoTime() - start) / 1e9);
+        return pass.data;
+    }
+
+    /**
+     * The state shared by the tasks of the passes over one table.
+     */
+    private static final class Pass {
+        /** The pieces of the table. */
+        final int mask;
+        /** The pieces in ascending order. */
+        final int[] pieces;
+        /** The table being solved. */
+        final byte[] data;
+        /** One bit per position that is solved or impossible. */
+        final long[] done;
+        /** The table reached by capturing each piece, indexed by piece. */
+        final byte[][] sub = new byte[PIECES][];
+
+        Pass (int mask, byte[] data, long[] done) {
+            this.mask = mask;
+            this.data = data;
+            this.done = done;
+            pieces = new int[Integer.bitCount(mask)];
+            for (int m = mask, i = 0; m != 0; m &= m - 1)
+                pieces[i++] = Integer.numberOfTrailingZeros(m);
+        }
+
+        /**
+         * Sets up the position of an index.
+         *
+         * @param pos Receives the position
+         * @param index The index
+         * @return false if the position is impossible
+         */
+        boolean decode (Position pos, int index) {
+            int side = (index & 1) + 1, rest = index >>> 1;
+
+            pos.clear();
+            for (int i = pieces.length - 1; i >= 0; i--) {
+                int piece = pieces[i], sq = rest % SQUARES, player = playerOf(piece);
+                rest /= SQUARES;
+                if (!pos.isEmpty(sq) || sq == den(player) || (isLake(sq) && typeOf(piece) != RAT))
+                    return false;
+                pos.put(piece, sq);
+                if ((enemyTraps(player) >>> sq & 1L) != 0)
+                    pos.setWeak(sq, true);
+            }
+            pos.setSideToMove(side);
+            return (pos.occupied(side) & 1L << den(opponent(side))) == 0; // the side to move cannot have won already
+        }
+
+        /**
+         * Solves one position in pass {@code n}.
+         *
+         * @param pos Scratch position
+         * @param moves Scratch move buffer
+         * @param index The index of an unsolved position
+         * @param n The pass
+         * @return true if the position was solved
+         */
+        boolean solve (Position pos, int[] moves, int index, int n) {
+            if (!decode(pos, index))
+                return true; // impossible; left as 0
+
+            int side = pos.getSideToMove();
+            if (n == 0) {
+                if ((pos.occupied(opponent(side)) & 1L << den(side)) != 0
+                        || MoveGenerator.generate(pos, side, moves) == 0) {
+                    data[index] = Tablebase.loss(0);
+                    return true;
+                }
+                return false;
+            }
+
+            int count = MoveGenerator.generate(pos, side, moves);
+            boolean allWon = true;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i], captured = Move.captured(move);
+
+                pos.makeMove(move);
+                int value = captured == EMPTY ? data[(int) Tablebase.index(pos, mask)]
+                          : sub[captured][(int) Tablebase.index(pos, mask & ~(1 << captured))];
+                pos.unmakeMove();
+
+                // results of this pass (distance n) are not trusted until the next one
+                if (Tablebase.isLoss(value) && Tablebase.plies(value) < n) {
+                    data[index] = Tablebase.win(n);
+                    return true;
+                }
+                if (!Tablebase.isWin(value) || Tablebase.plies(value) >= n)
+                    allWon = false;
+            }
+            if (allWon) {
+                data[index] = Tablebase.loss(n);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Runs one pass over a range of indices.
+         */
+        final class Task extends RecursiveTask<Integer> {
+            private static final long serialVersionUID = 1L;
+
+            private final int from, to, n;
+
+            Task (int from, int to, int n) {
+                this.from = from;
+                this.to = to;
+                this.n = n;
+            }
+
+            @Override
+            protected Integer compute () {
+                if (to - from > CHUNK) {
+                    int mid = from + Math.max(1, (to - from) / 2 / CHUNK) * CHUNK;
+                    Task left = new Task(from, mid, n);
+                    left.fork();
+                    int right = new Task(mid, to, n).compute();
+                    return left.join() + right;
+                }
+
+                Position pos = new Position();
+                int[] moves = new int[MoveGenerator.MAX_MOVES];
+                int resolved = 0;
+                for (int index = from; index < to; index++) {
+                    if ((done[index >>> 6] >>> index & 1L) != 0)
+                        continue;
+                    if (solve(pos, moves, index, n)) {
+                        done[index >>> 6] |= 1L << index;
+                        if (data[index] != 0)
+                            resolved++;
+                    }
+                }
+                return resolved;
+            }
+        }
+    }
+
+    /**
+     * Writes a solved table.
+     *
+     * @param directory The output directory, created if missing
+     * @param mask The pieces
+     * @param table The solved table
+     * @return The file written
+     * @throws IOException if the file cannot be written
+     */
+    public static Path write (Path directory, int mask, byte[] table) throws IOException {
+        Path file = directory.resolve(Tablebase.signature(mask) + Tablebase.EXTENSION);
+        ByteBuffer header = ByteBuffer.allocate(Tablebase.HEADER_BYTES);
+
+        header.putInt(Tablebase.MAGIC).putShort((short) mask).put((byte) Integer.bitCount(mask))
+              .put((byte) Tablebase.VERSION).flip();
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header);
+            ByteBuffer body = ByteBuffer.wrap(table);
+            while (body.hasRemaining())
+                channel.write(body);
+        }
+        return file;
+    }
+
+    /**
+     * Generates tables and writes them to a directory.
+     * <p>
+     * Without signatures, the elephant and rat against lion endgames ({@code ER_L} and
+     * {@code L_ER}) are generated, along with every smaller set they reach.
+     *
+     * @param args {@code [--out DIR] [--threads N] [--max K] [signature...]}; {@code --max K}
+     *             generates every material set of up to K pieces
+     * @throws IOException if a table cannot be written
+     */
+    public static void main (String[] args) throws IOException {
+        Path directory = Paths.get(Tablebase.DEFAULT_DIRECTORY);
+        int threads = Runtime.getRuntime().availableProcessors(), max = 0;
+        List<Integer> masks = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--out":
+                    directory = Paths.get(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--max":
+                    max = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    masks.add(Tablebase.parseSignature(args[i]));
+            }
+        }
+        for (int mask = 1; mask < 1 << PIECES && max > 0; mask++)
+            if (Integer.bitCount(mask) <= max)
+                masks.add(mask);
+        if (masks.isEmpty()) {
+            masks.add(Tablebase.parseSignature("ER_L"));
+            masks.add(Tablebase.parseSignature("L_ER"));
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        long start = System.nanoTime();
+        for (int mask : masks)
+            generator.solve(mask);
+        for (int mask : generator.solvedMasks())
+            write(directory, mask, generator.solved.get(mask));
+        System.out.printf("%d tables written to %s in %.1f s%n", generator.solved.size(), directory,
+                (System.nanoTime() - start) / 1e9);
+    }
+}
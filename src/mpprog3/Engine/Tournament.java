@@ -0,0 +1,378 @@
+package mpprog3.Engine;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import mpprog3.Controller.board;
+import mpprog3.Model.Piece;
+
+/**
+ * Headless engine-versus-engine match runner.
+ * <p>
+ * Games are played on a {@link board} through {@link board#movePiece} and
+ * {@link board#trapped}, the same rules the Swing board uses, without creating any
+ * window. Several worker threads play games concurrently, each with its own pair of
+ * engines, so transposition tables are reused instead of being allocated per game.
+ * <p>
+ * Games are played in pairs from the same opening: a few seeded random moves, then
+ * the engines. The first engine plays the side that moves first in even games and the
+ * other side in odd games. A game is drawn by a threefold repetition, by
+ * {@value DrawDetector#DEFAULT_QUIET_PLIES} plies without a capture (see
+ * {@link DrawDetector}), or when it reaches {@value #MAX_GAME_PLIES} plies. The engines
+ * are given the game history so they can see repetitions coming.
+ * The report gives the first engine's wins, losses and draws, an Elo difference with a
+ * 95% confidence interval, and games per second. Games can be archived with a
+ * {@link GameRecordWriter}. A game that throws is reported on the error stream and
+ * counted as a failure rather than a result, and {@link #main(String[])} then exits
+ * with status 1.
+ */
+public final class Tournament {
+    /** Games longer than this many plies are draws. */
+    public static final int MAX_GAME_PLIES = 300;
+    /** z-value of a two-sided 95% confidence interval. */
+    private static final double Z95 = 1.96;
+
+    /** Engine specification of the first engine. */
+    private final String first;
+    /** Engine specification of the second engine. */
+    private final String second;
+    /** Time per move in milliseconds. */
+    private final long millis;
+    /** Random moves at the start of each game pair. */
+    private final int randomPlies;
+    /** Seed of the random openings. */
+    private final long seed;
+
+    /** Next game number to play. */
+    private final AtomicInteger next = new AtomicInteger();
+    /** The first engine's wins. */
+    private final AtomicInteger wins = new AtomicInteger();
+    /** The first engine's losses. */
+    private final AtomicInteger losses = new AtomicInteger();
+    /** Drawn games. */
+    private final AtomicInteger draws = new AtomicInteger();
+    /** Games finished with a result. */
+    private final AtomicInteger completed = new AtomicInteger();
+    /** Games that threw instead of finishing. */
+    private final AtomicInteger failures = new AtomicInteger();
+    /** Archive of the played games, or null; guarded by itself. */
+    private GameRecordWriter recorder;
+
+    /**
+     * Constructs a match.
+     *
+     * @param first The first engine, as accepted by {@link #createEngine(String)}
+     * @param second The second engine
+     * @param millis The time per move in milliseconds
+     * @param randomPlies The random moves at the start of each game pair
+     * @param seed The seed of the random openings
+     */
+    public Tournament (String first, String second, long millis, int randomPlies, long seed) {
+        createEngine(first); // fail early on a bad specification
+        createEngine(second);
+        this.first = first;
+        this.second = second;
+        this.millis = millis;
+        this.randomPlies = randomPlies;
+        this.seed = seed;
+    }
+
+    /**
+     * Creates an engine from a specification.
+     *
+     * @param spec {@code alphabeta}, {@code lazysmp[:threads]} or {@code mcts[:threads]}
+     * @return The engine
+     * @throws IllegalArgumentException if the specification is unknown
+     */
+    public static SearchEngine createEngine (String spec) {
+        String[] parts = spec.split(":");
+        int threads = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+
+        switch (parts[0]) {
+            case "alphabeta":
+                return new AlphaBeta(new TranspositionTable(4));
+            case "lazysmp":
+                return new LazySmp(threads, 16);
+            case "mcts":
+                return new Mcts(threads, spec.hashCode());
+            default:
+                throw new IllegalArgumentException("unknown engine: " + spec);
+        }
+    }
+
+    /**
+     * Archives every game played from now on.
+     *
+     * @param recorder The writer, which the caller closes after {@link #run(int, int, int)}
+     */
+    public void setRecorder (GameRecordWriter recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Plays the match. A game that throws is reported and counted in
+     * {@link #failures()}; its worker goes on with new engines.
+     *
+     * @param games The number of games
+     * @param threads The number of games played at the same time
+     * @param progress Print a progress line after every this many games; 0 for none
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public void run (int games, int threads, int progress) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> workers = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < threads; i++)
+                workers.add(pool.submit(() -> work(games, progress)));
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                }
+                catch (ExecutionException e) { // not a game: the engines could not be created
+                    failures.incrementAndGet();
+                    e.getCause().printStackTrace();
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Plays games until all are taken, in one worker.
+     *
+     * @param games The number of games
+     * @param progress Print a progress line after every this many games; 0 for none
+     */
+    private void work (int games, int progress) {
+        SearchEngine[] engines = {createEngine(first), createEngine(second)};
+        int game;
+
+        while ((game = next.getAndIncrement()) < games) {
+            GameRecord moves = new GameRecord(1); // player 1 always moves first
+            int result;
+            try {
+                result = play(game, engines, moves);
+            }
+            catch (RuntimeException e) {
+                failures.incrementAndGet();
+                System.err.println("game " + game + " failed:");
+                e.printStackTrace();
+                engines = new SearchEngine[] {createEngine(first), createEngine(second)}; // state unknown
+                continue;
+            }
+            record(result);
+            archive(moves, result, game % 2 == 0 ? 1 : 2);
+            int played = completed.incrementAndGet(); // each count is printed once
+            if (progress > 0 && played % progress == 0)
+                System.out.println(played + " games: " + summary());
+        }
+    }
+
+    /**
+     * Returns the games finished with a result.
+     *
+     * @return Wins, losses and draws of the first engine
+     */
+    public int played () {
+        return wins.get() + losses.get() + draws.get();
+    }
+
+    /**
+     * Returns the games that failed.
+     *
+     * @return The games, and workers, that threw
+     */
+    public int failures () {
+        return failures.get();
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param game The game number
+     * @param engines The first and second engine
+     * @param record Receives the moves played
+     * @return 1 if the first engine won, -1 if it lost, 0 for a draw
+     */
+    private int play (int game, SearchEngine[] engines, GameRecord record) {
+        SplittableRandom random = new SplittableRandom(seed + game / 2); // both games of a pair
+        board b = new board();
+        Position pos = b.getPosition();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int firstPlayer = game % 2 == 0 ? 1 : 2;
+        DrawDetector history = new DrawDetector();
+
+        history.reset(pos.hash());
+        for (int ply = 0; ; ply++) {
+            if (pos.winner() != 0)
+                return pos.winner() == firstPlayer ? 1 : -1;
+            if (ply == MAX_GAME_PLIES || history.isDraw())
+                return 0;
+
+            int player = pos.getSideToMove(), move;
+            if (ply < randomPlies) {
+                int n = b.generateMoves(player, moves);
+                move = n == 0 ? Move.NONE : moves[random.nextInt(n)];
+            }
+            else {
+                move = engines[player == firstPlayer ? 0 : 1].bestMove(pos, history, millis);
+            }
+            if (move == Move.NONE) // no legal move loses
+                return player == firstPlayer ? -1 : 1;
+
+            Piece piece = b.getPiece(Move.piece(move));
+            if (!b.movePiece(piece, Position.row(Move.to(move)), Position.col(Move.to(move))))
+                throw new IllegalStateException("illegal move " + Move.toString(move) + " in game " + game);
+            b.trapped(piece);
+            history.push(pos, move);
+            record.add(move);
+        }
+    }
+
+    /**
+     * Appends a game to the archive, if there is one.
+     *
+     * @param moves The moves played
+     * @param result The result from the first engine's point of view
+     * @param firstPlayer The side the first engine played
+     */
+    private void archive (GameRecord moves, int result, int firstPlayer) {
+        if (recorder == null)
+            return;
+
+        moves.setResult(result == 0 ? 0 : result > 0 ? firstPlayer : 3 - firstPlayer);
+        synchronized (recorder) {
+            try {
+                recorder.writeGame(moves);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Counts the result of a game.
+     *
+     * @param result 1, -1 or 0 from the first engine's point of view
+     */
+    private void record (int result) {
+        if (result > 0)
+            wins.incrementAndGet();
+        else if (result < 0)
+            losses.incrementAndGet();
+        else
+            draws.incrementAndGet();
+    }
+
+    /**
+     * Describes the results so far.
+     *
+     * @return Wins, losses, draws and the Elo estimate of the first engine
+     */
+    public String summary () {
+        int w = wins.get(), l = losses.get(), d = draws.get(), n = w + l + d;
+        double score = n == 0 ? 0.5 : (w + d / 2.0) / n;
+        double deviation = n == 0 ? 0 : Math.sqrt((w * Math.pow(1 - score, 2) + l * Math.pow(score, 2)
+                + d * Math.pow(0.5 - score, 2)) / n / n);
+
+        return String.format("+%d -%d =%d, score %.1f%%, Elo %s [%s, %s]", w, l, d, score * 100, elo(score),
+                elo(score - Z95 * deviation), elo(score + Z95 * deviation));
+    }
+
+    /**
+     * Converts a score to an Elo difference.
+     *
+     * @param score The expected score, 0 to 1
+     * @return The Elo difference, rounded, or an infinity sign
+     */
+    private static String elo (double score) {
+        if (score <= 0)
+            return "-inf";
+        if (score >= 1)
+            return "+inf";
+        return String.format("%+.0f", 0.0 - 400 * Math.log10(1 / score - 1)); // 0.0 - x avoids "-0"
+    }
+
+    /**
+     * Plays a match between two engines and prints the result.
+     *
+     * @param args {@code [--games N] [--threads T] [--millis M] [--random P] [--seed S]
+     *             [--progress K] [--record FILE] [first-engine] [second-engine]}; engines
+     *             default to {@code alphabeta} and {@code mcts}, and {@code --record}
+     *             appends the games to a binary game record
+     * @throws IOException if the record cannot be written
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public static void main (String[] args) throws IOException, InterruptedException {
+        int games = 100, threads = Runtime.getRuntime().availableProcessors(), randomPlies = 4, progress = 0;
+        long millis = 50, seed = 1;
+        String first = null, second = null, record = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--millis":
+                    millis = Long.parseLong(args[++i]);
+                    break;
+                case "--random":
+                    randomPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--progress":
+                    progress = Integer.parseInt(args[++i]);
+                    break;
+                case "--record":
+                    record = args[++i];
+                    break;
+                default:
+                    if (first == null)
+                        first = args[i];
+                    else
+                        second = args[i];
+            }
+        }
+
+        Tournament tournament = new Tournament(first == null ? "alphabeta" : first,
+                second == null ? "mcts" : second, millis, randomPlies, seed);
+        long start = System.nanoTime();
+        if (record != null)
+            tournament.setRecorder(new GameRecordWriter(Paths.get(record)));
+        try {
+            tournament.run(games, threads, progress);
+        }
+        finally {
+            if (tournament.recorder != null)
+                tournament.recorder.close();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%s vs %s, %d ms/move: %s%n", tournament.first, tournament.second, millis,
+                tournament.summary());
+        int played = tournament.played();
+        System.out.printf("%d games in %.1f s (%.2f games/s, %d threads)%n", played, seconds, played / seconds,
+                threads);
+        if (tournament.failures() > 0) {
+            System.err.println(tournament.failures() + " of " + games + " games failed");
+            System.exit(1);
+        }
+    }
+}
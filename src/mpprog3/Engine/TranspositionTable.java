@@ -0,0 +1,210 @@
+package mpprog3.Engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Fixed-size transposition table (TT): a cache of already-searched positions keyed by
+ * {@link Position#hash()}.
+ * <p>
+ * Storage is one flat {@code long[]} sized in megabytes, with no objects per entry.
+ * The table is split into 32-byte buckets of two entries:
+ * <ul>
+ *   <li>Slot 0 is depth-preferred: it is only replaced by an equal or deeper search of
+ *       any position, by the same position, or when its entry is from an older search</li>
+ *   <li>Slot 1 always takes the newest entry that slot 0 refused</li>
+ * </ul>
+ * Each entry is two longs: {@code key ^ data} and {@code data}. Several search threads
+ * may share one table without locks. Reads and writes of each long are atomic
+ * (opaque {@link VarHandle} access), and a reader only accepts an entry if XORing the
+ * two halves gives back its key. A pair torn by a concurrent writer just looks like a
+ * miss.
+ * <p>
+ * Data layout of an entry:
+ * <ul>
+ *   <li>bits 0-22: packed {@link Move} (0 for none)</li>
+ *   <li>bits 23-43: score, offset by 2^20</li>
+ *   <li>bits 44-50: depth</li>
+ *   <li>bits 51-52: bound type ({@link #EXACT}, {@link #LOWER} or {@link #UPPER}), never 0</li>
+ *   <li>bits 53-60: search generation</li>
+ * </ul>
+ *
+ * @see AlphaBeta
+ */
+public final class TranspositionTable {
+    /** Bound type: the score is exact. */
+    public static final int EXACT = 1;
+    /** Bound type: the score is a lower bound (the search failed high). */
+    public static final int LOWER = 2;
+    /** Bound type: the score is an upper bound (the search failed low). */
+    public static final int UPPER = 3;
+
+    /** Longs per bucket: two entries of key and data. */
+    private static final int BUCKET_LONGS = 4;
+    /** Offset added to scores so they are stored unsigned. */
+    private static final int SCORE_OFFSET = 1 << 20;
+
+    /** Atomic, unordered access to the table longs. */
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** The buckets, {@link #BUCKET_LONGS} longs each. */
+    private final long[] table;
+    /** Number of buckets minus one; the bucket count is a power of two. */
+    private final long bucketMask;
+    /** Generation of the current search, 0-255. */
+    private volatile int generation;
+
+    /**
+     * Constructs an empty table.
+     *
+     * @param megabytes The size in MB; rounded down to a power-of-two number of buckets
+     */
+    public TranspositionTable (int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1L, ((long) megabytes << 20) / (BUCKET_LONGS * 8)));
+        buckets = Math.min(buckets, 1L << 28); // keep the array index within an int
+        table = new long[(int) buckets * BUCKET_LONGS];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public void clear () {
+        java.util.Arrays.fill(table, 0L);
+    }
+
+    /**
+     * Starts a new search generation, making older entries cheaper to replace.
+     */
+    public void newSearch () {
+        generation = (generation + 1) & 255;
+    }
+
+    /**
+     * Looks up a position.
+     *
+     * @param key The position key
+     * @return The entry data, or 0 if the position is not stored
+     */
+    public long probe (long key) {
+        int base = (int) (key & bucketMask) * BUCKET_LONGS;
+
+        for (int i = base; i < base + BUCKET_LONGS; i += 2) {
+            long data = (long) SLOT.getOpaque(table, i + 1);
+            if (((long) SLOT.getOpaque(table, i) ^ data) == key && data != 0)
+                return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores the result of a search.
+     *
+     * @param key The position key
+     * @param move The best move found, or {@link Move#NONE}
+     * @param score The score, within plus or minus 2^20
+     * @param depth The remaining depth that was searched (0-127)
+     * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    public void store (long key, int move, int score, int depth, int bound) {
+        int base = (int) (key & bucketMask) * BUCKET_LONGS;
+        int gen = generation;
+        long old = (long) SLOT.getOpaque(table, base + 1);
+        boolean same = ((long) SLOT.getOpaque(table, base) ^ old) == key;
+        int slot = base;
+
+        if (!same && old != 0 && generation(old) == gen && depth(old) > depth)
+            slot = base + 2; // slot 0 holds a deeper result of this search; use slot 1
+
+        if (move == Move.NONE) { // keep a known best move of the same position
+            long prev = (long) SLOT.getOpaque(table, slot + 1);
+            if (((long) SLOT.getOpaque(table, slot) ^ prev) == key)
+                move = move(prev);
+        }
+
+        long data = (move & 0x7FFFFFL)
+                | (long) (score + SCORE_OFFSET) << 23
+                | (long) (depth & 127) << 44
+                | (long) bound << 51
+                | (long) gen << 53;
+        SLOT.setOpaque(table, slot, key ^ data);
+        SLOT.setOpaque(table, slot + 1, data);
+    }
+
+    /**
+     * Returns the move of an entry.
+     *
+     * @param data The entry data from {@link #probe(long)}
+     * @return The packed move, or {@link Move#NONE}
+     */
+    public static int move (long data) {
+        return (int) (data & 0x7FFFFF);
+    }
+
+    /**
+     * Returns the score of an entry.
+     *
+     * @param data The entry data from {@link #probe(long)}
+     * @return The score
+     */
+    public static int score (long data) {
+        return (int) (data >>> 23 & 0x1FFFFF) - SCORE_OFFSET;
+    }
+
+    /**
+     * Returns the depth of an entry.
+     *
+     * @param data The entry data from {@link #probe(long)}
+     * @return The depth
+     */
+    public static int depth (long data) {
+        return (int) (data >>> 44 & 127);
+    }
+
+    /**
+     * Returns the bound type of an entry.
+     *
+     * @param data The entry data from {@link #probe(long)}
+     * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+     */
+    public static int bound (long data) {
+        return (int) (data >>> 51 & 3);
+    }
+
+    /**
+     * Returns the search generation of an entry.
+     *
+     * @param data The entry data
+     * @return The generation, 0-255
+     */
+    private static int generation (long data) {
+        return (int) (data >>> 53 & 255);
+    }
+
+    /**
+     * Estimates how full the table is from the first thousand buckets.
+     *
+     * @return Used slots of the current generation per thousand
+     */
+    public int hashfull () {
+        int used = 0, gen = generation, buckets = (int) Math.min(1000, bucketMask + 1);
+
+        for (int b = 0; b < buckets; b++) {
+            for (int i = 0; i < 2; i++) {
+                long data = (long) SLOT.getOpaque(table, b * BUCKET_LONGS + i * 2 + 1);
+                if (data != 0 && generation(data) == gen)
+                    used++;
+            }
+        }
+        return used * 1000 / (buckets * 2);
+    }
+
+    /**
+     * Returns the size of the table.
+     *
+     * @return The number of entries (two per bucket)
+     */
+    public long capacity () {
+        return (bucketMask + 1) * 2;
+    }
+}
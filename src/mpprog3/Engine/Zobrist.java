@@ -0,0 +1,97 @@
+package mpprog3.Engine;
+
+/**
+ * Zobrist keys for 64-bit position hashing.
+ * <p>
+ * A position key is the XOR of one key per (piece, square) pair on the board, one key
+ * per weakened square and, when player 2 is to move, the side key. {@link Position}
+ * keeps its key up to date incrementally as pieces are put, removed and weakened.
+ * <p>
+ * The keys come from a SplitMix64 sequence with a fixed seed, written out here rather
+ * than taken from {@link java.util.Random}, so they are identical on every JVM run and
+ * version. Persisted keys (transposition dumps, opening books, game indexes) stay valid
+ * as long as {@link #SEED} and the generation order below are unchanged.
+ */
+public final class Zobrist {
+    /** Seed of the key sequence. Changing it invalidates every stored position key. */
+    public static final long SEED = 0x4A554E474C45L; // "JUNGLE"
+
+    /** Keys indexed by {@code piece << 6 | square}. */
+    private static final long[] PIECE_SQUARE = new long[Position.PIECES << 6];
+    /** Keys for a weakened piece on each square. */
+    private static final long[] WEAK = new long[Position.SQUARES];
+    /** Key XORed in when player 2 is to move. */
+    public static final long SIDE;
+
+    static {
+        long[] state = {SEED};
+
+        for (int piece = 0; piece < Position.PIECES; piece++)
+            for (int sq = 0; sq < Position.SQUARES; sq++)
+                PIECE_SQUARE[piece << 6 | sq] = next(state);
+        for (int sq = 0; sq < Position.SQUARES; sq++)
+            WEAK[sq] = next(state);
+        SIDE = next(state);
+    }
+
+    private Zobrist () {
+    }
+
+    /**
+     * Advances a SplitMix64 state and returns the next value.
+     *
+     * @param state A one-element array holding the generator state
+     * @return The next pseudo-random 64-bit value
+     */
+    private static long next (long[] state) {
+        long z = state[0] += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns the key of a piece standing on a square.
+     *
+     * @param piece The piece index (0-15)
+     * @param sq The square (0-62)
+     * @return The key
+     */
+    public static long piece (int piece, int sq) {
+        return PIECE_SQUARE[piece << 6 | sq];
+    }
+
+    /**
+     * Returns the key of a weakened piece on a square.
+     *
+     * @param sq The square (0-62)
+     * @return The key
+     */
+    public static long weak (int sq) {
+        return WEAK[sq];
+    }
+
+    /**
+     * Computes the key of a position from scratch. {@link Position#hash()} must always
+     * equal this value; the method is meant for checks and for building keys outside
+     * the move path.
+     *
+     * @param pos The position
+     * @return The 64-bit key
+     */
+    public static long of (Position pos) {
+        long key = pos.getSideToMove() == 2 ? SIDE : 0L;
+        long w = pos.weak();
+
+        for (int sq = 0; sq < Position.SQUARES; sq++) {
+            int piece = pos.pieceAt(sq);
+            if (piece != Position.EMPTY)
+                key ^= PIECE_SQUARE[piece << 6 | sq];
+        }
+        while (w != 0) {
+            key ^= WEAK[Long.numberOfTrailingZeros(w)];
+            w &= w - 1;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,33 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A capture made by {@code board.movePiece}.
+ */
+@Name("mpprog3.Capture")
+@Label("Capture")
+@Category({"Jungle King", "Rules"})
+@Description("A piece captured on the board")
+@StackTrace(false)
+public final class CaptureEvent extends jdk.jfr.Event {
+    /** The capturing piece. */
+    @Label("Attacker")
+    public String attacker;
+
+    /** The captured piece. */
+    @Label("Defender")
+    public String defender;
+
+    /** The square of the capture. */
+    @Label("Square")
+    public String square;
+
+    /** Whether the defender was weakened by a trap. */
+    @Label("Defender Weak")
+    public boolean defenderWeak;
+}
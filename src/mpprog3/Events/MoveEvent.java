@@ -0,0 +1,37 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A move made by {@code board.movePiece}, timed over making it and updating the pieces.
+ */
+@Name("mpprog3.Move")
+@Label("Move")
+@Category({"Jungle King", "Rules"})
+@Description("A move made on the board")
+@StackTrace(false)
+public final class MoveEvent extends jdk.jfr.Event {
+    /** The move in engine notation, such as Rc7-c6 or Tc2xg2. */
+    @Label("Move")
+    public String move;
+
+    /** The player who moved. */
+    @Label("Player")
+    public int player;
+
+    /** The piece name, such as lion-blue. */
+    @Label("Piece")
+    public String piece;
+
+    /** The name of the captured piece, or null. */
+    @Label("Captured")
+    public String captured;
+
+    /** Whether the move is a lake jump. */
+    @Label("Jump")
+    public boolean jump;
+}
@@ -0,0 +1,33 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A move checked by {@code board.isValidMove}, timed over the rules check.
+ */
+@Name("mpprog3.MoveValidation")
+@Label("Move Validation")
+@Category({"Jungle King", "Rules"})
+@Description("A piece move checked against the rules")
+@StackTrace(false)
+public final class MoveValidationEvent extends jdk.jfr.Event {
+    /** The piece name, such as rat-blue. */
+    @Label("Piece")
+    public String piece;
+
+    /** The square the piece stands on. */
+    @Label("From")
+    public String from;
+
+    /** The target square. */
+    @Label("To")
+    public String to;
+
+    /** Whether the move is legal. */
+    @Label("Valid")
+    public boolean valid;
+}
@@ -0,0 +1,29 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A change of a piece's trap weakness found by {@code board.trapped}.
+ */
+@Name("mpprog3.Trap")
+@Label("Trap")
+@Category({"Jungle King", "Rules"})
+@Description("A piece weakened by stepping on an enemy trap, or restored by leaving it")
+@StackTrace(false)
+public final class TrapEvent extends jdk.jfr.Event {
+    /** The piece name. */
+    @Label("Piece")
+    public String piece;
+
+    /** The square of the piece. */
+    @Label("Square")
+    public String square;
+
+    /** Whether the piece is now weak. */
+    @Label("Weak")
+    public boolean weak;
+}
@@ -0,0 +1,29 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A turn passed to the other player in the Swing board.
+ */
+@Name("mpprog3.Turn")
+@Label("Turn")
+@Category({"Jungle King", "Game"})
+@Description("The turn passed to the other player")
+@StackTrace(false)
+public final class TurnEvent extends jdk.jfr.Event {
+    /** The game number since the board was opened. */
+    @Label("Game")
+    public int game;
+
+    /** The player now to move. */
+    @Label("Player")
+    public int player;
+
+    /** Whether the computer plays that side. */
+    @Label("Computer")
+    public boolean computer;
+}
@@ -0,0 +1,33 @@
+package mpprog3.Events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A won or drawn game detected by the Swing board.
+ */
+@Name("mpprog3.Win")
+@Label("Win")
+@Category({"Jungle King", "Game"})
+@Description("A game won by reaching the enemy den or leaving the opponent without a move, or drawn")
+@StackTrace(false)
+public final class WinEvent extends jdk.jfr.Event {
+    /** The game number since the board was opened. */
+    @Label("Game")
+    public int game;
+
+    /** The winning player, or 0 for a draw. */
+    @Label("Winner")
+    public int winner;
+
+    /** How the game ended: den, no moves, repetition or no captures. */
+    @Label("Reason")
+    public String reason;
+
+    /** Plies played in the game. */
+    @Label("Plies")
+    public int plies;
+}
@@ -249,6 +249,13 @@ public class Piece {
 		alive = false;
 	}
 	
+	/**
+	 * Marks the piece as alive again, e.g. when a capture is undone.
+	 */
+	public void setAlive () {
+		alive = true;
+	}
+	
 	/**
 	 * Marks the piece as weak.
 	 */
@@ -65,10 +65,8 @@ public class elephant extends Piece {
     public boolean capture (Piece piece) { // only captures, doesn't update position
 		// return true if piece gets captured, false if piece doesn't get captured
 		
-		if (piece.getWeak()) {
-            System.err.println("weakrat");
+		if (piece.getWeak())
 			return true;
-		}
 		
 		else
 			if (strength >= piece.getStrength() && !(piece instanceof rat)) {
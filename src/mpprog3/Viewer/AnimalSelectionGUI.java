@@ -29,11 +29,6 @@ import mpprog3.Model.*;
  * @see Piece
  */
 public class AnimalSelectionGUI extends JPanel {
-    /**
-     * Path to the card back image file.
-     */
-    private static final String BACK_IMAGE = "img/shou2025.png";
-    
     /**
      * Total number of animal cards available for selection.
      */
@@ -106,9 +101,7 @@ public class AnimalSelectionGUI extends JPanel {
         animalButtons = new JButton[ANIMAL_COUNT];
         
         try {
-            ImageIcon backIcon = new ImageIcon(BACK_IMAGE);
-            Image scaledBack = backIcon.getImage().getScaledInstance(120, 180, Image.SCALE_SMOOTH);
-            ImageIcon scaledBackIcon = new ImageIcon(scaledBack);
+            ImageIcon scaledBackIcon = new ImageIcon(ImageCache.getAtlas().getSprite(ImageCache.CARD_BACK));
             
             for (int i = 0; i < ANIMAL_COUNT; i++) {
                 animalButtons[i] = new JButton(scaledBackIcon);
@@ -172,11 +165,10 @@ public class AnimalSelectionGUI extends JPanel {
                 Piece selectedAnimal = animals.get(index);
                 
                 try {
-                    ImageIcon animalIcon = new ImageIcon("img/" + selectedAnimal.getPieceName() + ".png");
-                    Image scaledAnimal = animalIcon.getImage().getScaledInstance(250, 250, Image.SCALE_SMOOTH);
+                    Image scaledAnimal = ImageCache.get(selectedAnimal.getPieceName(), ImageCache.REVEAL);
                     imageLabel.setIcon(new ImageIcon(scaledAnimal));
                     
-                    Image cardImage = animalIcon.getImage().getScaledInstance(120, 180, Image.SCALE_SMOOTH);
+                    Image cardImage = ImageCache.get(selectedAnimal.getPieceName(), ImageCache.CARD);
                     animalButtons[index].setIcon(new ImageIcon(cardImage));
                     animalButtons[index].setDisabledIcon(new ImageIcon(cardImage));
                     animalButtons[index].setEnabled(false);
@@ -245,8 +237,7 @@ public class AnimalSelectionGUI extends JPanel {
         JLabel player1Label = new JLabel("Player 1's Card", JLabel.CENTER);
         player1Label.setFont(new Font("Arial", Font.BOLD, 18));
         
-        ImageIcon player1Icon = new ImageIcon("img/" + player1Animal.getPieceName() + ".png");
-        Image player1Image = player1Icon.getImage().getScaledInstance(200, 300, Image.SCALE_SMOOTH);
+        Image player1Image = ImageCache.get(player1Animal.getPieceName(), ImageCache.RESULT);
         JLabel player1Card = new JLabel(new ImageIcon(player1Image));
         player1Card.setBorder(BorderFactory.createLineBorder(Color.BLUE, 3));
         
@@ -259,8 +250,7 @@ public class AnimalSelectionGUI extends JPanel {
         JLabel player2Label = new JLabel("Player 2's Card", JLabel.CENTER);
         player2Label.setFont(new Font("Arial", Font.BOLD, 18));
         
-        ImageIcon player2Icon = new ImageIcon("img/" + player2Animal.getPieceName() + ".png");
-        Image player2Image = player2Icon.getImage().getScaledInstance(200, 300, Image.SCALE_SMOOTH);
+        Image player2Image = ImageCache.get(player2Animal.getPieceName(), ImageCache.RESULT);
         JLabel player2Card = new JLabel(new ImageIcon(player2Image));
         player2Card.setBorder(BorderFactory.createLineBorder(Color.RED, 3));
         
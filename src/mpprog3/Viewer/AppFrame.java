@@ -40,6 +40,11 @@ public class AppFrame extends JFrame {
      */
     private int firstPlayer;
     
+    /**
+     * Who controls each player (index 0 = player 1), chosen in the menu.
+     */
+    private PlayerType[] playerTypes = {PlayerType.HUMAN, PlayerType.HUMAN};
+    
     /**
      * Card layout manager for view switching.
      */
@@ -101,6 +106,26 @@ public class AppFrame extends JFrame {
 	public void returnToMenu () {
         cardLayout.show(mainPanel, "Menu");
     }
+    /**
+     * Sets who controls a player in the next game.
+     * 
+     * @param player The player number (1 or 2)
+     * @param type Human or computer
+     */
+    public void setPlayerType (int player, PlayerType type) {
+        playerTypes[player - 1] = type;
+    }
+    
+    /**
+     * Returns who controls a player.
+     * 
+     * @param player The player number (1 or 2)
+     * @return Human or computer
+     */
+    public PlayerType getPlayerType (int player) {
+        return playerTypes[player - 1];
+    }
+    
     /**
      * Switches to the animal selection view.
      */
@@ -0,0 +1,144 @@
+package mpprog3.Viewer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import javax.imageio.ImageIO;
+
+
+/**
+ * A sprite atlas: the board's piece and terrain images packed into one image.
+ * <p>
+ * The atlas is made by {@link AtlasBuilder} and read from two files:
+ * <ul>
+ *   <li>{@value #IMAGE_FILE}: the packed sprites, already scaled to the size they are drawn at</li>
+ *   <li>{@value #INDEX_FILE}: one line per sprite, {@code name x y width height}; lines
+ *       starting with {@code #} are comments</li>
+ * </ul>
+ * Drawing a sprite copies a sub-rectangle of the single atlas image, so the game opens
+ * and decodes one file instead of one per sprite and keeps one image in memory.
+ *
+ * @see AtlasBuilder
+ * @see ImageCache#getAtlas()
+ */
+public final class Atlas {
+
+    /**
+     * Path of the packed image.
+     */
+    public static final String IMAGE_FILE = "img/atlas.png";
+
+    /**
+     * Path of the index.
+     */
+    public static final String INDEX_FILE = "img/atlas.txt";
+
+    /**
+     * The packed sprites.
+     */
+    private final BufferedImage image;
+
+    /**
+     * The rectangle of each sprite in the image, by name.
+     */
+    private final Map<String, Rectangle> bounds;
+
+    /**
+     * Constructs an atlas.
+     *
+     * @param image The packed sprites
+     * @param bounds The rectangle of each sprite, by name
+     */
+    Atlas (BufferedImage image, Map<String, Rectangle> bounds) {
+        this.image = image;
+        this.bounds = bounds;
+    }
+
+    /**
+     * Reads the atlas from {@value #IMAGE_FILE} and {@value #INDEX_FILE}.
+     *
+     * @param compatible Whether to convert the image to the screen's pixel format
+     * @return The atlas
+     * @throws IOException if a file is missing or malformed
+     */
+    public static Atlas read (boolean compatible) throws IOException {
+        BufferedImage image = ImageIO.read(new File(IMAGE_FILE));
+        Map<String, Rectangle> bounds = new HashMap<>();
+        String line;
+
+        if (image == null)
+            throw new IOException(IMAGE_FILE + " is not a readable image");
+        if (compatible)
+            image = ImageCache.copy(image);
+
+        try (BufferedReader in = Files.newBufferedReader(new File(INDEX_FILE).toPath())) {
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+
+                String[] fields = line.split("\\s+");
+                if (fields.length != 5)
+                    throw new IOException(INDEX_FILE + ": bad line: " + line);
+                Rectangle r = new Rectangle(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]));
+                if (!new Rectangle(image.getWidth(), image.getHeight()).contains(r))
+                    throw new IOException(INDEX_FILE + ": " + fields[0] + " lies outside the image");
+                bounds.put(fields[0], r);
+            }
+        }
+        catch (NumberFormatException e) {
+            throw new IOException(INDEX_FILE + ": " + e.getMessage(), e);
+        }
+        return new Atlas(image, bounds);
+    }
+
+    /**
+     * Returns the rectangle of a sprite in the atlas image.
+     *
+     * @param name The sprite name, the image filename without path or extension
+     * @return The rectangle, or null if the atlas has no such sprite
+     */
+    public Rectangle getBounds (String name) {
+        Rectangle r = bounds.get(name);
+        return r == null ? null : new Rectangle(r);
+    }
+
+    /**
+     * Returns a sprite as an image sharing the atlas pixels.
+     *
+     * @param name The sprite name
+     * @return The sprite, or null if the atlas has no such sprite
+     */
+    public BufferedImage getSprite (String name) {
+        Rectangle r = bounds.get(name);
+        return r == null ? null : image.getSubimage(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Draws a sprite by copying its rectangle of the atlas image.
+     *
+     * @param g The Graphics context for painting
+     * @param name The sprite name
+     * @param x The left edge of the destination
+     * @param y The top edge of the destination
+     * @param width The destination width; the sprite is scaled if it differs
+     * @param height The destination height
+     * @param observer Notified if the image is not complete, may be null
+     * @return false if the atlas has no such sprite
+     */
+    public boolean draw (Graphics g, String name, int x, int y, int width, int height, ImageObserver observer) {
+        Rectangle r = bounds.get(name);
+
+        if (r == null)
+            return false;
+        g.drawImage(image, x, y, x + width, y + height, r.x, r.y, r.x + r.width, r.y + r.height, observer);
+        return true;
+    }
+}
@@ -0,0 +1,146 @@
+package mpprog3.Viewer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Build step that packs the board's sprites into {@value Atlas#IMAGE_FILE} and
+ * {@value Atlas#INDEX_FILE}.
+ * <p>
+ * Each sprite is decoded from {@code img/}, scaled to the size it is drawn at and
+ * placed with a simple shelf packer: sprites sorted by height fill rows left to right,
+ * with a transparent pixel between them so scaled blits do not bleed into neighbours.
+ * Packed sprites:
+ * <ul>
+ *   <li>Terrain: lake, trap and both dens at {@link ImageCache#TILE}</li>
+ *   <li>Both colors of every animal at {@link ImageCache#TILE}</li>
+ *   <li>The card back at {@link ImageCache#CARD}</li>
+ * </ul>
+ * Run it from the project directory after changing an image in {@code img/}:
+ * {@code java mpprog3.Viewer.AtlasBuilder [--width PX]}.
+ *
+ * @see Atlas
+ */
+public final class AtlasBuilder {
+
+    /**
+     * Default width of the atlas image.
+     */
+    private static final int DEFAULT_WIDTH = 512;
+
+    /**
+     * Gap between packed sprites.
+     */
+    private static final int PADDING = 1;
+
+    private AtlasBuilder () {
+    }
+
+    /**
+     * A sprite to pack.
+     */
+    private static final class Sprite {
+        /** The image filename without path or extension. */
+        final String name;
+        /** The size it is drawn at. */
+        final Dimension size;
+        /** Its rectangle in the atlas, once placed. */
+        Rectangle place;
+
+        Sprite (String name, Dimension size) {
+            this.name = name;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Lists the packed sprites.
+     *
+     * @return The sprites, unplaced
+     */
+    private static List<Sprite> sprites () {
+        List<Sprite> sprites = new ArrayList<>();
+
+        for (String terrain : new String[] {"lake", "trap", "den-blue", "den-green"})
+            sprites.add(new Sprite(terrain, ImageCache.TILE));
+        for (String animal : new String[] {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"}) {
+            sprites.add(new Sprite(animal + "-blue", ImageCache.TILE));
+            sprites.add(new Sprite(animal + "-green", ImageCache.TILE));
+        }
+        sprites.add(new Sprite(ImageCache.CARD_BACK, ImageCache.CARD));
+        return sprites;
+    }
+
+    /**
+     * Builds the atlas and writes the image and the index.
+     *
+     * @param args {@code [--width PX]}
+     * @throws IOException if an image cannot be read or the output written
+     */
+    public static void main (String[] args) throws IOException {
+        int width = DEFAULT_WIDTH;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--width":
+                    width = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+
+        List<Sprite> sprites = sprites();
+        List<BufferedImage> images = new ArrayList<>();
+        int x = 0, y = 0, shelf = 0, bytes = 0;
+
+        sprites.sort((a, b) -> b.size.height - a.size.height); // stable: tallest first
+        for (Sprite sprite : sprites) {
+            File file = new File("img/" + sprite.name + ".png");
+            BufferedImage original = ImageIO.read(file);
+
+            if (original == null)
+                throw new IOException(file + " is not a readable image");
+            if (sprite.size.width > width)
+                throw new IllegalArgumentException(sprite.name + " is wider than the atlas");
+            bytes += original.getWidth() * original.getHeight() * 4;
+
+            if (x + sprite.size.width > width) { // next shelf
+                x = 0;
+                y += shelf + PADDING;
+                shelf = 0;
+            }
+            images.add(ImageCache.scale(original, sprite.size.width, sprite.size.height));
+            sprite.place = new Rectangle(x, y, sprite.size.width, sprite.size.height);
+            x += sprite.size.width + PADDING;
+            shelf = Math.max(shelf, sprite.size.height);
+        }
+
+        BufferedImage atlas = new BufferedImage(width, y + shelf, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = atlas.createGraphics();
+        for (int i = 0; i < images.size(); i++)
+            g.drawImage(images.get(i), sprites.get(i).place.x, sprites.get(i).place.y, null);
+        g.dispose();
+
+        ImageIO.write(atlas, "png", new File(Atlas.IMAGE_FILE));
+        try (PrintWriter out = new PrintWriter(new File(Atlas.INDEX_FILE), "UTF-8")) {
+            out.println("# Sprite atlas index written by mpprog3.Viewer.AtlasBuilder; do not edit.");
+            out.println("# name x y width height");
+            for (Sprite sprite : sprites) {
+                Rectangle r = sprite.place;
+                out.println(sprite.name + " " + r.x + " " + r.y + " " + r.width + " " + r.height);
+            }
+        }
+
+        System.out.printf("%d sprites packed into %dx%d (%d KB decoded, was %d KB in %d files)%n", sprites.size(),
+                atlas.getWidth(), atlas.getHeight(), atlas.getWidth() * atlas.getHeight() * 4 / 1024, bytes / 1024,
+                sprites.size());
+    }
+}
@@ -0,0 +1,256 @@
+package mpprog3.Viewer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.ImageIO;
+
+
+/**
+ * Shared cache of the game's images, decoded once and pre-scaled to the sizes the views draw.
+ * <p>
+ * Each PNG in {@code img/} is decoded at most once. Every requested size is scaled once
+ * into an image compatible with the screen, so drawing it is a plain copy, and shared by
+ * all views. The board's sprites come from the {@link Atlas} instead, also kept here.
+ * {@link #preload()} starts loading every image the game uses on background threads at
+ * startup; a view asking for an image that is still loading waits for it.
+ *
+ * <p>The sizes in use:
+ * <ul>
+ *   <li>{@link #TILE}: board tiles and pieces in {@link JungleKingBoard}, packed in the atlas</li>
+ *   <li>{@link #CARD}: cards in {@link AnimalSelectionGUI}</li>
+ *   <li>{@link #REVEAL}: the animal revealed when a card is picked</li>
+ *   <li>{@link #RESULT}: both picked animals on the results screen</li>
+ * </ul>
+ *
+ * @see JungleKingBoard
+ * @see AnimalSelectionGUI
+ */
+public final class ImageCache {
+
+    /**
+     * Size of a board tile.
+     */
+    public static final Dimension TILE = new Dimension(JungleKingBoard.TILE_SIZE, JungleKingBoard.TILE_SIZE);
+
+    /**
+     * Size of a selection card.
+     */
+    public static final Dimension CARD = new Dimension(120, 180);
+
+    /**
+     * Size of a revealed animal.
+     */
+    public static final Dimension REVEAL = new Dimension(250, 250);
+
+    /**
+     * Size of an animal on the results screen.
+     */
+    public static final Dimension RESULT = new Dimension(200, 300);
+
+    /**
+     * Name of the card back image.
+     */
+    public static final String CARD_BACK = "shou2025";
+
+    /**
+     * Directory of the image files.
+     */
+    private static final String DIRECTORY = "img/";
+
+    /**
+     * Animal names in order of strength.
+     */
+    private static final String[] ANIMALS = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
+
+    /**
+     * Decoded images at their original size, by name.
+     */
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> originals = new ConcurrentHashMap<>();
+
+    /**
+     * Scaled images, by name and size.
+     */
+    private static final ConcurrentHashMap<String, CompletableFuture<BufferedImage>> scaled = new ConcurrentHashMap<>();
+
+    /**
+     * The loading sprite atlas, or null before the first request.
+     */
+    private static CompletableFuture<Atlas> atlas;
+
+    private ImageCache () {
+    }
+
+    /**
+     * Starts loading every image the game draws, at every size it is drawn at, without waiting.
+     */
+    public static void preload () {
+        requestAtlas(); // board sprites and the card back
+
+        for (String animal : ANIMALS) {
+            request(animal + "-green", CARD);
+            request(animal + "-green", REVEAL);
+            request(animal + "-green", RESULT);
+        }
+    }
+
+    /**
+     * Returns the sprite atlas, loading it first if needed.
+     *
+     * @return The atlas, in the screen's pixel format
+     * @throws UncheckedIOException if the atlas fails to load
+     */
+    public static Atlas getAtlas () {
+        try {
+            return requestAtlas().join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the load of the sprite atlas, starting it if this is the first request.
+     *
+     * @return The pending or finished load
+     */
+    private static synchronized CompletableFuture<Atlas> requestAtlas () {
+        if (atlas == null) {
+            atlas = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return Atlas.read(true);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException("Cannot load the sprite atlas", e);
+                }
+            });
+        }
+        return atlas;
+    }
+
+    /**
+     * Returns an image scaled to a size, loading it first if needed.
+     *
+     * @param name The image filename (without path or extension)
+     * @param size The size to scale to
+     * @return The scaled image
+     * @throws UncheckedIOException if the image fails to load
+     */
+    public static Image get (String name, Dimension size) {
+        try {
+            return request(name, size).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the load of an image at a size, starting it if this is the first request.
+     *
+     * @param name The image filename (without path or extension)
+     * @param size The size to scale to
+     * @return The pending or finished load
+     */
+    private static CompletableFuture<BufferedImage> request (String name, Dimension size) {
+        String key = name + "@" + size.width + "x" + size.height;
+
+        return scaled.computeIfAbsent(key, k -> original(name).thenApplyAsync(image -> scale(image, size.width, size.height)));
+    }
+
+    /**
+     * Returns the decoding of an image, starting it if this is the first request.
+     *
+     * @param name The image filename (without path or extension)
+     * @return The pending or finished decoding
+     */
+    private static CompletableFuture<BufferedImage> original (String name) {
+        return originals.computeIfAbsent(name, n -> CompletableFuture.supplyAsync(() -> {
+            File file = new File(DIRECTORY + n + ".png");
+            try {
+                BufferedImage image = ImageIO.read(file);
+                if (image == null)
+                    throw new IOException("not a readable image");
+                return image;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Cannot load " + file, e);
+            }
+        }));
+    }
+
+    /**
+     * Scales an image into a new image compatible with the screen.
+     * <p>
+     * Large reductions are done in halving steps with bilinear filtering, which keeps
+     * the quality of area averaging without its cost.
+     *
+     * @param image The original image
+     * @param width The target width
+     * @param height The target height
+     * @return The scaled image
+     */
+    static BufferedImage scale (BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int w = image.getWidth(), h = image.getHeight();
+
+        do {
+            w = Math.max(width, w / 2);
+            h = Math.max(height, h / 2);
+            if (w < width * 2 && h < height * 2) { // last step lands on the target size
+                w = width;
+                h = height;
+            }
+
+            BufferedImage next = createImage(w, h);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(current, 0, 0, w, h, null);
+            g.dispose();
+            current = next;
+        } while (w != width || h != height);
+
+        return current;
+    }
+
+    /**
+     * Copies an image into the screen's pixel format.
+     *
+     * @param image The image
+     * @return The copy
+     */
+    static BufferedImage copy (BufferedImage image) {
+        BufferedImage copy = createImage(image.getWidth(), image.getHeight());
+        Graphics2D g = copy.createGraphics();
+
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Creates a translucent image in the screen's pixel format.
+     *
+     * @param width The width
+     * @param height The height
+     * @return The empty image
+     */
+    private static BufferedImage createImage (int width, int height) {
+        if (GraphicsEnvironment.isHeadless())
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+
+        GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+}
@@ -3,9 +3,17 @@ package mpprog3.Viewer;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import javax.swing.*;
+import jdk.jfr.EventType;
 import mpprog3.Controller.*;
+import mpprog3.Engine.DrawDetector;
+import mpprog3.Engine.Move;
+import mpprog3.Engine.Position;
+import mpprog3.Engine.SearchEngine;
+import mpprog3.Events.TurnEvent;
+import mpprog3.Events.WinEvent;
 import mpprog3.Model.*;
 
 
@@ -17,12 +25,13 @@ import mpprog3.Model.*;
  *   <li>Rendering the 7x9 game grid with all pieces and terrain</li>
  *   <li>Managing player turns and piece selection</li>
  *   <li>Handling mouse interactions for piece movement</li>
+ *   <li>Asking a {@link SearchEngine} for the move when a side is played by the computer</li>
  *   <li>Enforcing game rules and win conditions</li>
  * </ul>
  * 
  * <p>The board layout consists of:
  * <ul>
- *   <li>Top panel: Player turn indicator</li>
+ *   <li>Top panel: Engine report (left) and player turn indicator (right)</li>
  *   <li>Center: Game grid with alternating light/dark tiles</li>
  *   <li>Bottom panel: Control buttons (Main Menu, Exit)</li>
  * </ul>
@@ -32,6 +41,12 @@ import mpprog3.Model.*;
  */
 public class JungleKingBoard extends JPanel {
     
+    /**
+     * JFR types of the game events, checked before an event is allocated.
+     */
+    private static final EventType TURN_EVENT = EventType.getEventType(TurnEvent.class);
+    private static final EventType WIN_EVENT = EventType.getEventType(WinEvent.class);
+    
     /**
      * Number of rows in the game board.
      */
@@ -47,11 +62,21 @@ public class JungleKingBoard extends JPanel {
      */
     public static final int TILE_SIZE = 100;
     
+    /**
+     * Thinking time of a computer player per move, in milliseconds.
+     */
+    public static final long ENGINE_MILLIS = 1500;
+    
     /**
      * The game board model containing piece positions and terrain.
      */
     private board board;
     
+    /**
+     * Positions of the current game, for detecting draws.
+     */
+    private DrawDetector history = new DrawDetector();
+    
     /**
      * List of all game pieces.
      */
@@ -73,19 +98,34 @@ public class JungleKingBoard extends JPanel {
     private JLabel turnLabel;
     
     /**
-     * Images for special terrain tiles.
+     * Sprite atlas holding the terrain and piece images, by image name.
      */
-    private Image lakeImage, trapImage, denBlueImage, denGreenImage;
+    private Atlas atlas;
     
     /**
-     * Map of piece names to their corresponding images.
+     * The checkerboard, terrain and dens rendered once, by tile size.
      */
-    private java.util.Map<String, Image> pieceImages = new java.util.HashMap<>();
+    private java.util.Map<Integer, BufferedImage> staticLayers = new java.util.HashMap<>();
     
     /**
      * Reference to the main application frame for navigation.
      */
     private AppFrame appFrame;
+    
+    /**
+     * Engine playing each player (index 0 = player 1), or null for a human.
+     */
+    private SearchEngine[] engines = new SearchEngine[2];
+    
+    /**
+     * Label showing the report of the last engine search.
+     */
+    private JLabel engineLabel;
+    
+    /**
+     * Incremented on every reset so results of searches on an old board are ignored.
+     */
+    private int gameNumber = 0;
 
     /**
      * Constructs a new game board for the specified starting player.
@@ -100,6 +140,8 @@ public class JungleKingBoard extends JPanel {
         pieces = new ArrayList<>();
         board = new board();
         currentPlayer = turn;
+        board.getPosition().setSideToMove(turn);
+        history.reset(board.getPosition().hash());
         
         // create top panel with turn indicator on right
         JPanel topPanel = new JPanel(new BorderLayout());
@@ -111,8 +153,15 @@ public class JungleKingBoard extends JPanel {
         turnLabel.setForeground(turn == 1 ? Color.BLUE : Color.GREEN);
         topPanel.add(turnLabel, BorderLayout.CENTER);
         
+        engineLabel = new JLabel("", JLabel.LEFT);
+        engineLabel.setFont(new Font("Arial", Font.PLAIN, 14));
+        topPanel.add(engineLabel, BorderLayout.WEST);
+        
         add(topPanel, BorderLayout.NORTH);
         
+        for (int player = 1; player <= 2; player++)
+            engines[player - 1] = appFrame.getPlayerType(player).createEngine();
+        
         loadImages();
         setPreferredSize(new Dimension(COLS * TILE_SIZE, ROWS * TILE_SIZE));
         
@@ -154,6 +203,8 @@ public class JungleKingBoard extends JPanel {
                 handleTileClick(row, col);
             }
         });
+        
+        SwingUtilities.invokeLater(this::requestEngineMove); // computer may move first
     }
 
     /**
@@ -174,46 +225,21 @@ public class JungleKingBoard extends JPanel {
     /**
      * Loads all image resources required for the game.
      * <p>
-     * Includes:
-     * <ul>
-     *   <li>Terrain images (lakes, traps, dens)</li>
-     *   <li>Player-specific piece images</li>
-     * </ul>
+     * The terrain images (lakes, traps, dens) and the player-specific piece images
+     * are sprites of the shared {@link Atlas}, already scaled to the tile size.
+     * 
+     * @throws RuntimeException if the atlas fails to load
      */
     private void loadImages () {
-        lakeImage = loadImage("lake");
-        trapImage = loadImage("trap");
-        denBlueImage = loadImage("den-blue");
-        denGreenImage = loadImage("den-green");
-        String key = null;
-        
-        String[] pieceTypes = {"rat", "cat", "dog", "wolf", "leopard", "tiger", "lion", "elephant"};
-        for (String type : pieceTypes) {
-            for (int player = 1; player <= 2; player++) {
-                if (player == 1)
-					key = type + "-blue";
-				if (player == 2)
-					key = type + "-green";
-                pieceImages.put(key, loadImage(key));
-            }
-        }
-    }
-    
-    /**
-     * Loads and scales an individual image resource.
-     * 
-     * @param fileName The image filename (without path or extension)
-     * @return The scaled Image object
-     * @throws RuntimeException if image fails to load
-     */
-    private Image loadImage (String fileName) {
-        String path = "img/" + fileName + ".png";
-        ImageIcon icon = new ImageIcon(path);
-        return icon.getImage().getScaledInstance(TILE_SIZE, TILE_SIZE, Image.SCALE_SMOOTH);
+        atlas = ImageCache.getAtlas();
     }
 
     /**
      * Paints the game board and all components.
+     * <p>
+     * Only the part inside the clip is painted: the static layer is copied from its
+     * cache and just the pieces on tiles touching the clip are drawn, so a repaint of
+     * a few tiles after a move costs a few tiles.
      * 
      * @param g The Graphics context for painting
      */
@@ -221,23 +247,54 @@ public class JungleKingBoard extends JPanel {
     protected void paintComponent (Graphics g) {
         super.paintComponent(g);
         
-        drawBoardBackground(g); // background
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, COLS * TILE_SIZE, ROWS * TILE_SIZE);
         
-        drawSpecialTiles(g); // lake, traps, dens
+        g.drawImage(getStaticLayer(TILE_SIZE), 0, 0, this); // background, lake, traps, dens
         
-        drawPieces(g); // pieces
+        drawPieces(g, clip); // pieces
         
         if (selectedPiece != null) { 
             drawSelection(g, selectedPiece);
         }
     }
     
+    /**
+     * Returns the static layer for a tile size, rendering it on first use.
+     * <p>
+     * Terrain never changes during a game, so the checkerboard, lake and trap tiles and
+     * the dens are drawn once into an image compatible with the screen, which is then
+     * copied with a single blit.
+     * 
+     * @param tile The tile size in pixels
+     * @return The rendered layer
+     */
+    private BufferedImage getStaticLayer (int tile) {
+        BufferedImage layer = staticLayers.get(tile);
+        
+        if (layer == null) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            layer = config != null ? config.createCompatibleImage(COLS * tile, ROWS * tile)
+                    : new BufferedImage(COLS * tile, ROWS * tile, BufferedImage.TYPE_INT_RGB);
+            
+            Graphics2D g = layer.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            drawBoardBackground(g, tile);
+            drawSpecialTiles(g, tile);
+            g.dispose();
+            staticLayers.put(tile, layer);
+        }
+        return layer;
+    }
+    
     /**
      * Draws the checkerboard background pattern.
      * 
      * @param g The Graphics context for painting
+     * @param tile The tile size in pixels
      */
-    private void drawBoardBackground (Graphics g) {
+    private void drawBoardBackground (Graphics g, int tile) {
         for (int row = 0; row < ROWS; row++) {
             for (int col = 0; col < COLS; col++) {
                 
@@ -247,7 +304,7 @@ public class JungleKingBoard extends JPanel {
 				else
                     g.setColor(Color.DARK_GRAY);
 				
-                g.fillRect(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+                g.fillRect(col * tile, row * tile, tile, tile);
             }
         }
     }
@@ -256,51 +313,48 @@ public class JungleKingBoard extends JPanel {
      * Draws special terrain tiles (lakes, traps, dens).
      * 
      * @param g The Graphics context for painting
+     * @param tile The tile size in pixels
      */
-    private void drawSpecialTiles (Graphics g) {
+    private void drawSpecialTiles (Graphics g, int tile) {
 		int row, col;
-		Object cell;
+		char terrain;
 		
         for (row = 0; row < ROWS; row++) {
             for (col = 0; col < COLS; col++) {
-                cell = board.getGrid(row, col);
+                terrain = Position.terrain(Position.square(row, col)); // not the grid: pieces hide it
                 
-                if (cell instanceof Character) {
-                    char terrain = (Character) cell;
-                    if (terrain == '~') // lake
-                        g.drawImage(lakeImage, col * TILE_SIZE, row * TILE_SIZE, this);
-                    
-					else if (terrain == '#') // traps
-                        g.drawImage(trapImage, col * TILE_SIZE, row * TILE_SIZE, this);
-                    
-                }
+                if (terrain == '~') // lake
+                    atlas.draw(g, "lake", col * tile, row * tile, tile, tile, null);
+                
+				else if (terrain == '#') // traps
+                    atlas.draw(g, "trap", col * tile, row * tile, tile, tile, null);
             }
         }
         // dens
-        g.drawImage(denBlueImage, 0 * TILE_SIZE, 3 * TILE_SIZE, this);
-        g.drawImage(denGreenImage, 8 * TILE_SIZE, 3 * TILE_SIZE, this);
+        atlas.draw(g, "den-blue", 0 * tile, 3 * tile, tile, tile, null);
+        atlas.draw(g, "den-green", 8 * tile, 3 * tile, tile, tile, null);
     }
     
     /**
-     * Draws all game pieces at their current positions.
+     * Draws the game pieces on the tiles touching a clip rectangle.
      * 
      * @param g The Graphics context for painting
+     * @param clip The area to repaint
      */
-    private void drawPieces (Graphics g) {
+    private void drawPieces (Graphics g, Rectangle clip) {
 		int row, col;
 		Object cell;
 		Piece piece;
-		Image pieceImage;
+		int firstRow = Math.max(0, clip.y / TILE_SIZE), lastRow = Math.min(ROWS - 1, (clip.y + clip.height - 1) / TILE_SIZE);
+		int firstCol = Math.max(0, clip.x / TILE_SIZE), lastCol = Math.min(COLS - 1, (clip.x + clip.width - 1) / TILE_SIZE);
 		
-        for (row = 0; row < ROWS; row++) {
-            for (col = 0; col < COLS; col++) {
+        for (row = firstRow; row <= lastRow; row++) {
+            for (col = firstCol; col <= lastCol; col++) {
                 cell = board.getGrid(row, col);
                 if (cell instanceof Piece) {
                     piece = (Piece) cell;
-                    pieceImage = pieceImages.get(piece.getPieceName().toLowerCase());
-					
-                    if (pieceImage != null)
-                        g.drawImage(pieceImage, col * TILE_SIZE, row * TILE_SIZE, this);
+                    atlas.draw(g, piece.getPieceName().toLowerCase(), col * TILE_SIZE, row * TILE_SIZE,
+                            TILE_SIZE, TILE_SIZE, this);
                 }
             }
         }
@@ -327,6 +381,13 @@ public class JungleKingBoard extends JPanel {
     private void handleTileClick (int row, int col) {
 		Object cell = board.getGrid(row, col);
 		Piece clickedPiece;
+		Piece previousSelection = selectedPiece;
+		int fromRow = selectedPiece != null ? selectedPiece.getRow() : row;
+		int fromCol = selectedPiece != null ? selectedPiece.getColumn() : col;
+		int to = Position.square(row, col);
+		
+		if (engines[currentPlayer - 1] != null) // the computer is playing this side
+			return;
 		
 		if (cell instanceof Piece) { // if clicking on a piece
 			clickedPiece = (Piece) cell;
@@ -346,29 +407,72 @@ public class JungleKingBoard extends JPanel {
 						selectedPiece = clickedPiece; // clicked on own piece; change selection
 					
 					else { // attempt capture
-						if (selectedPiece.capture(clickedPiece)) {
-							board.movePiece(selectedPiece, row, col);
+						if (selectedPiece.capture(clickedPiece) && board.movePiece(selectedPiece, row, col)) {
+							to = lastMoveTarget();
 							board.trapped(selectedPiece);
-                            System.out.println( selectedPiece.getPieceName() + "weak ?" + selectedPiece.getWeak());
 							endTurn();
 						}
-                        System.out.println("valid move jkb" + board.isValidMove(selectedPiece, row, col));
 					}
 				}
 			}
 		} 
 		else { // clicking on empty space
 			if (selectedPiece != null && isAdjacent(selectedPiece.getRow(), selectedPiece.getColumn(), row, col)) {
-				if (board.isValidMove(selectedPiece, row, col)) {
-					board.movePiece(selectedPiece, row, col);
+				if (board.isValidMove(selectedPiece, row, col) && board.movePiece(selectedPiece, row, col)) {
+					to = lastMoveTarget(); // across the lake after a jump
 					board.trapped(selectedPiece);
-                    System.out.println( selectedPiece.getPieceName() + "weak ?" + selectedPiece.getWeak());
 					endTurn();
 				}
 			}
 		}
 		
-		repaint();
+		// a move changes the old selection's tile (its start), its landing tile and any
+		// lake tiles jumped over; the piece has moved, so use the saved start
+		if (previousSelection != null)
+			repaintTiles(fromRow, fromCol, Position.row(to), Position.col(to));
+		else
+			repaintTile(row, col);
+		if (selectedPiece != null)
+			repaintTile(selectedPiece.getRow(), selectedPiece.getColumn());
+	}
+	
+    /**
+     * Returns where the last move played on the board ended, which for a lake jump is
+     * the far shore rather than the lake tile clicked.
+     * 
+     * @return The target square of the last move
+     */
+	private int lastMoveTarget () {
+		Position position = board.getPosition();
+		return Move.to(position.historyMove(position.historySize() - 1));
+	}
+	
+    /**
+     * Schedules a repaint of one tile.
+     * <p>
+     * Swing merges the tiles scheduled before the next paint into one clip.
+     * 
+     * @param row The grid row (0-6)
+     * @param col The grid column (0-8)
+     */
+	private void repaintTile (int row, int col) {
+		repaint(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+	}
+	
+    /**
+     * Schedules a repaint of the tiles from one tile to another in a row or column,
+     * both included, such as the start and end of a move and the lake tiles of a jump.
+     * 
+     * @param row1 The first tile's row
+     * @param col1 The first tile's column
+     * @param row2 The second tile's row
+     * @param col2 The second tile's column
+     */
+	private void repaintTiles (int row1, int col1, int row2, int col2) {
+		int row = Math.min(row1, row2), col = Math.min(col1, col2);
+		
+		repaint(col * TILE_SIZE, row * TILE_SIZE, (Math.abs(col1 - col2) + 1) * TILE_SIZE,
+				(Math.abs(row1 - row2) + 1) * TILE_SIZE);
 	}
 	
     /**
@@ -390,19 +494,130 @@ public class JungleKingBoard extends JPanel {
     
     /**
      * Ends the current player's turn and switches to the next player.
-     * Also checks for win conditions.
+     * Also checks for win conditions, and for draws by repetition or by too many
+     * moves without a capture.
+     * <p>
+     * Records a {@link TurnEvent}, and a {@link WinEvent} when the game is won or drawn.
      */
     private void endTurn() {
+        Position position = board.getPosition();
+        boolean over = true;
+        
         selectedPiece = null;
+        history.push(position, position.historyMove(position.historySize() - 1));
 		if (checkWinCondition()) {
+            recordWin(currentPlayer, "den");
             JOptionPane.showMessageDialog(this, "Player " + currentPlayer + " wins!");
             resetGame();
         }
+        else if (history.isDraw()) {
+            recordWin(0, history.reason());
+            JOptionPane.showMessageDialog(this, "The game is a draw (" + history.reason() + ").");
+            resetGame();
+        }
+        else
+            over = false;
         currentPlayer = (currentPlayer == 1) ? 2 : 1; // switch player
+        if (over) { // the new game starts with the other player
+            board.getPosition().setSideToMove(currentPlayer);
+            history.reset(board.getPosition().hash());
+        }
         updateTurnLabel();
         
-        // check for win condition
+        if (TURN_EVENT.isEnabled()) {
+            TurnEvent event = new TurnEvent();
+            event.game = gameNumber;
+            event.player = currentPlayer;
+            event.computer = engines[currentPlayer - 1] != null;
+            event.commit();
+        }
+        
+        requestEngineMove(); // let the computer answer if it plays the new side
+    }
+    
+    /**
+     * Starts a background search if the current player is played by the computer.
+     * <p>
+     * The engine searches a copy of the board's position; when it finishes, its move is
+     * played on the Event Dispatch Thread through {@link board#movePiece(Piece, int, int)}
+     * like a human move, and its depth and speed are shown in the top panel.
+     */
+    private void requestEngineMove () {
+        SearchEngine engine = engines[currentPlayer - 1];
+        
+        if (engine == null)
+            return;
         
+        Position root = new Position(board.getPosition());
+        DrawDetector positions = new DrawDetector(history);
+        int game = gameNumber;
+        engineLabel.setText(engine.name() + " is thinking...");
+        
+        new SwingWorker<Integer, Void>() {
+            @Override
+            protected Integer doInBackground () {
+                return engine.bestMove(root, positions, ENGINE_MILLIS);
+            }
+            
+            @Override
+            protected void done () {
+                if (game == gameNumber)
+                    playEngineMove(engine, this);
+            }
+        }.execute();
+    }
+    
+    /**
+     * Plays the move found by an engine search on the board and ends the turn.
+     * 
+     * @param engine The engine that searched
+     * @param worker The finished search
+     */
+    private void playEngineMove (SearchEngine engine, SwingWorker<Integer, Void> worker) {
+        int move;
+        
+        try {
+            move = worker.get();
+        }
+        catch (Exception e) {
+            engineLabel.setText(engine.name() + " failed: " + e.getMessage());
+            return;
+        }
+        
+        if (move == Move.NONE) { // no legal move loses the game
+            recordWin(3 - currentPlayer, "no moves");
+            JOptionPane.showMessageDialog(this, "Player " + currentPlayer + " cannot move. Player " + (3 - currentPlayer) + " wins!");
+            resetGame();
+            requestEngineMove();
+            return;
+        }
+        
+        Piece piece = board.getPiece(Move.piece(move));
+        engineLabel.setText(engine.name() + ": " + Move.toString(move) + " (" + engine.report() + ")");
+        
+        if (board.movePiece(piece, Position.row(Move.to(move)), Position.col(Move.to(move)))) {
+            board.trapped(piece);
+            endTurn();
+        }
+        repaintTiles(Position.row(Move.from(move)), Position.col(Move.from(move)),
+                Position.row(Move.to(move)), Position.col(Move.to(move)));
+    }
+
+    /**
+     * Records a {@link WinEvent} for the current game.
+     * 
+     * @param winner The winning player (1 or 2), or 0 for a draw
+     * @param reason How the game ended
+     */
+    private void recordWin (int winner, String reason) {
+        if (WIN_EVENT.isEnabled()) {
+            WinEvent event = new WinEvent();
+            event.game = gameNumber;
+            event.winner = winner;
+            event.reason = reason;
+            event.plies = board.getPosition().historySize();
+            event.commit();
+        }
     }
 
     /**
@@ -436,8 +651,10 @@ public class JungleKingBoard extends JPanel {
      * Resets the game to its initial state.
      */
     private void resetGame() { // reset game state
+        gameNumber++;
         board = new board();
         currentPlayer = 1;
+        history.reset(board.getPosition().hash());
         selectedPiece = null;
         updateTurnLabel();
         repaint();
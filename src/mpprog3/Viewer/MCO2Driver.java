@@ -38,6 +38,7 @@ public class MCO2Driver {
      * <p>
      * Execution flow:
      * <ol>
+     *   <li>Starts loading the images in the background ({@link ImageCache#preload()})</li>
      *   <li>Initializes Swing components on EDT</li>
      *   <li>Clears console and displays startup message</li>
      *   <li>Creates main application frame ({@link AppFrame})</li>
@@ -52,6 +53,8 @@ public class MCO2Driver {
      * @see javax.swing.SwingUtilities#invokeLater(Runnable)
      */
     public static void main(String[] args) {
+        ImageCache.preload(); // decode and scale the images in the background while the menu opens
+        
         SwingUtilities.invokeLater(() -> { // initialize the game on swing's event dispatch thread
             clearScreen();
             System.out.println("Starting Jungle King Game...");
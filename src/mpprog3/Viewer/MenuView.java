@@ -5,8 +5,9 @@ import javax.swing.*;
 
 /**
  * The main menu view for the Jungle King game.
- * Provides navigation to start the game or exit the application.
- * Displays the game title and action buttons in a centered layout.
+ * Provides navigation to start the game or exit the application,
+ * and lets each side be played by a human or by the computer.
+ * Displays the game title, player choices and action buttons in a centered layout.
  */
 public class MenuView extends JPanel {
     
@@ -20,6 +21,16 @@ public class MenuView extends JPanel {
      */
     private JButton exitButton;
     
+    /**
+     * Choice of who plays player 1 (blue).
+     */
+    private JComboBox<PlayerType> player1Choice;
+    
+    /**
+     * Choice of who plays player 2 (green).
+     */
+    private JComboBox<PlayerType> player2Choice;
+    
     /**
      * Reference to the main application frame for view navigation.
      */
@@ -47,26 +58,53 @@ public class MenuView extends JPanel {
         gbc.gridx = 0;
         add(title, gbc);
 		
+        player1Choice = createPlayerChoice(); // add player choices
+        player2Choice = createPlayerChoice();
+        JPanel choicePanel = new JPanel(new GridLayout(2, 2, 10, 5));
+        choicePanel.setOpaque(false);
+        choicePanel.add(new JLabel("Player 1 (Blue):"));
+        choicePanel.add(player1Choice);
+        choicePanel.add(new JLabel("Player 2 (Green):"));
+        choicePanel.add(player2Choice);
+        gbc.gridy = 1;
+        add(choicePanel, gbc);
+		
         startButton = new JButton("Start Game"); // add start button
         startButton.setFont(new Font("Arial Unicode MS", Font.PLAIN, 16));
         startButton.setPreferredSize(new Dimension(200, 50));
-        gbc.gridy = 1;
+        gbc.gridy = 2;
         add(startButton, gbc);
 		
         exitButton = new JButton("Exit Game"); // add exit button
         exitButton.setFont(new Font("Arial Unicode MS", Font.PLAIN, 16));
         exitButton.setPreferredSize(new Dimension(200, 50));
-        gbc.gridy = 2;
+        gbc.gridy = 3;
         add(exitButton, gbc);
         
         // action listeners
-        startButton.addActionListener(e -> appFrame.switchToAnimalSelection());
+        startButton.addActionListener(e -> {
+            appFrame.setPlayerType(1, (PlayerType) player1Choice.getSelectedItem());
+            appFrame.setPlayerType(2, (PlayerType) player2Choice.getSelectedItem());
+            appFrame.switchToAnimalSelection();
+        });
         exitButton.addActionListener(e -> System.exit(0));
         
         // decorative elements
-        gbc.gridy = 3;
+        gbc.gridy = 4;
         add(Box.createVerticalStrut(50), gbc);
     }
+    
+    /**
+     * Creates a drop-down listing every {@link PlayerType}, with human selected.
+     * 
+     * @return The combo box
+     */
+    private JComboBox<PlayerType> createPlayerChoice () {
+        JComboBox<PlayerType> choice = new JComboBox<>(PlayerType.values());
+        choice.setFont(new Font("Arial Unicode MS", Font.PLAIN, 14));
+        choice.setSelectedItem(PlayerType.HUMAN);
+        return choice;
+    }
     /**
      * Custom painting of the menu background and components.
      * 
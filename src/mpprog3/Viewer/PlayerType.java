@@ -0,0 +1,75 @@
+package mpprog3.Viewer;
+
+import mpprog3.Engine.*;
+
+/**
+ * Who controls a side of the game board: a human clicking on tiles or a computer engine.
+ * <p>
+ * Chosen per player in {@link MenuView} and used by {@link JungleKingBoard} to decide
+ * whether to wait for clicks or to ask an engine for the move.
+ *
+ * @see SearchEngine
+ */
+public enum PlayerType {
+    /** Moves are made by clicking on the board. */
+    HUMAN("Human"),
+    /** Moves are chosen by the alpha-beta engine. */
+    ALPHA_BETA("Computer (Alpha-Beta)"),
+    /** Moves are chosen by the alpha-beta engine running Lazy SMP on every processor. */
+    LAZY_SMP("Computer (Alpha-Beta, all cores)"),
+    /** Moves are chosen by Monte Carlo Tree Search on every processor. */
+    MCTS("Computer (MCTS)");
+
+    /**
+     * Text shown in the menu.
+     */
+    private final String label;
+
+    PlayerType (String label) {
+        this.label = label;
+    }
+
+    /**
+     * Creates a fresh engine for this player type.
+     *
+     * @return The engine, or null for {@link #HUMAN}
+     */
+    public SearchEngine createEngine () {
+        SearchEngine engine = createSearch();
+        OpeningBook book = OpeningBook.openDefault();
+
+        return engine == null || book == null ? engine : new BookEngine(book, engine);
+    }
+
+    /**
+     * Creates the search of this player type, without the opening book.
+     *
+     * @return The search, or null for {@link #HUMAN}
+     */
+    private SearchEngine createSearch () {
+        switch (this) {
+            case ALPHA_BETA:
+                AlphaBeta alphaBeta = new AlphaBeta();
+                alphaBeta.setTablebase(Tablebase.openDefault());
+                return alphaBeta;
+            case LAZY_SMP:
+                LazySmp smp = new LazySmp();
+                smp.setTablebase(Tablebase.openDefault());
+                return smp;
+            case MCTS:
+                return new Mcts();
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the menu text of this player type.
+     *
+     * @return The label
+     */
+    @Override
+    public String toString () {
+        return label;
+    }
+}